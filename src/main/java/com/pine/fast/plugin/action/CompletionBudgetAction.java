@@ -0,0 +1,51 @@
+package com.pine.fast.plugin.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.InputValidator;
+import com.intellij.openapi.ui.Messages;
+import com.pine.fast.plugin.persistent.SystemConfig;
+
+public class CompletionBudgetAction extends AnAction {
+
+    public CompletionBudgetAction() {
+        super(getBudgetText());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        String budgetMillis = Messages.showInputDialog(e.getProject(),
+                "单次补全搜索的时间预算（毫秒），用完后返回已收集的结果", "补全时间预算", null,
+                String.valueOf(SystemConfig.getCompletionBudgetMillis()), new PositiveIntValidator());
+        if (budgetMillis != null) {
+            SystemConfig.setCompletionBudgetMillis(Integer.parseInt(budgetMillis.trim()));
+        }
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setText(getBudgetText());
+    }
+
+    private static String getBudgetText() {
+        return "补全时间预算: " + SystemConfig.getCompletionBudgetMillis() + "ms";
+    }
+
+    static class PositiveIntValidator implements InputValidator {
+
+        @Override
+        public boolean checkInput(String inputString) {
+            try {
+                return Integer.parseInt(inputString.trim()) > 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean canClose(String inputString) {
+            return checkInput(inputString);
+        }
+
+    }
+}
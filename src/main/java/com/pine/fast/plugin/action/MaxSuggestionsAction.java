@@ -0,0 +1,33 @@
+package com.pine.fast.plugin.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.Messages;
+import com.pine.fast.plugin.action.CompletionBudgetAction.PositiveIntValidator;
+import com.pine.fast.plugin.persistent.SystemConfig;
+
+public class MaxSuggestionsAction extends AnAction {
+
+    public MaxSuggestionsAction() {
+        super(getMaxSuggestionsText());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        String maxSuggestions = Messages.showInputDialog(e.getProject(),
+                "单次补全最多收集的建议数，收集满后即停止搜索", "最大建议数", null,
+                String.valueOf(SystemConfig.getMaxSuggestions()), new PositiveIntValidator());
+        if (maxSuggestions != null) {
+            SystemConfig.setMaxSuggestions(Integer.parseInt(maxSuggestions.trim()));
+        }
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setText(getMaxSuggestionsText());
+    }
+
+    private static String getMaxSuggestionsText() {
+        return "最大建议数: " + SystemConfig.getMaxSuggestions();
+    }
+}
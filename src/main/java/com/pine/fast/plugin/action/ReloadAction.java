@@ -2,8 +2,14 @@ package com.pine.fast.plugin.action;
 
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.ui.Messages;
-import com.pine.fast.plugin.misc.Icons;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.pine.fast.plugin.persistent.CustomMetadataConfig;
+import com.pine.fast.plugin.suggestion.service.SuggestionService;
+import java.util.Collections;
 
 public class ReloadAction extends AnAction {
     public ReloadAction() {
@@ -12,7 +18,28 @@ public class ReloadAction extends AnAction {
 
     @Override
     public void actionPerformed(AnActionEvent e) {
-        Messages.showMessageDialog("功能开发中", "Fast Yaml", Messages.getWarningIcon());
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFolderDescriptor()
+                .withTitle("加载自定义配置").withDescription("选择自定义配置目录，目录下的 json 文件修改后自动生效");
+        VirtualFile directory = FileChooser.chooseFile(descriptor, project, null);
+        if (directory == null) {
+            return;
+        }
+        CustomMetadataConfig.addDirectory(project, directory.getPath());
+        SuggestionService service = SuggestionService.getInstance(project);
+        if (service.isIndexReady()) {
+            service.reloadCustomMetadata(project, Collections.singletonList(directory.getPath()));
+        } else {
+            // a full build reads the new directory too & retries a build that failed
+            service.reloadIndex(project);
+        }
+    }
 
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
     }
 }
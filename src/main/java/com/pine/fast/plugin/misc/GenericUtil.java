@@ -1,6 +1,5 @@
 package com.pine.fast.plugin.misc;
 
-import static com.intellij.codeInsight.completion.CompletionUtilCore.DUMMY_IDENTIFIER_TRIMMED;
 import static com.intellij.codeInsight.documentation.DocumentationManager.createHyperlink;
 import static com.intellij.openapi.util.text.StringUtil.containsChar;
 import static com.intellij.openapi.util.text.StringUtil.endsWithChar;
@@ -103,12 +102,23 @@ public class GenericUtil {
         }
     }
 
+    /**
+     * 根据 `.` 分隔为数组，并对每一段进行 sanitise
+     */
+    public static String[] toSanitizedPathSegments(String element) {
+        return QueryTokenizer.toSanitizedPathSegments(element);
+    }
+
+    public static String[] toRawPathSegments(String element) {
+        return QueryTokenizer.toRawPathSegments(element);
+    }
+
     public static String truncateIdeaDummyIdentifier(@NotNull PsiElement element) {
         return truncateIdeaDummyIdentifier(element.getText());
     }
 
     public static String truncateIdeaDummyIdentifier(String text) {
-        return text.replace(DUMMY_IDENTIFIER_TRIMMED, "");
+        return QueryTokenizer.stripDummyIdentifier(text);
     }
 
     @SafeVarargs
@@ -0,0 +1,251 @@
+package com.pine.fast.plugin.misc;
+
+import static com.intellij.codeInsight.completion.CompletionUtilCore.DUMMY_IDENTIFIER_TRIMMED;
+
+import gnu.trove.TIntArrayList;
+import javax.annotation.Nullable;
+
+/**
+ * 补全查询的分词器：一次字符扫描完成 IDEA 占位符（dummy identifier）的去除以及 {@code ${var}=} 的切分；按 `.` 分段由静态方法完成
+ * <p>
+ * Replaces the regex based {@code split}/{@code replaceAll} calls that used to run on every keystroke. {@link
+ * #tokenize(String)} walks the text once into buffers that are reused across calls, so results are only valid till the
+ * next call on the same instance. Use {@link #forCurrentThread()} to get one; instances are not thread safe. The
+ * static helpers allocate nothing but their results & return the input itself whenever it is unchanged
+ *
+ * @author pine
+ */
+public final class QueryTokenizer {
+
+    private static final ThreadLocal<QueryTokenizer> TOKENIZERS = ThreadLocal.withInitial(QueryTokenizer::new);
+
+    private static final int NONE = 0;
+    private static final int DOLLAR = 1;
+    private static final int BRACE = 2;
+    private static final int NAME = 3;
+    private static final int CLOSED = 4;
+    private static final int CLOSED_SPACE = 5;
+
+    private final StringBuilder buffer = new StringBuilder(64);
+    /**
+     * Start & end (exclusive) of each {@code ${var}=} within the query, flattened
+     */
+    private final TIntArrayList placeholders = new TIntArrayList();
+
+    private String query = "";
+    @Nullable
+    private String containsQuery;
+
+    public static QueryTokenizer forCurrentThread() {
+        return TOKENIZERS.get();
+    }
+
+    /**
+     * Scans the text of the element being completed
+     *
+     * @return this tokenizer, whose accessors now describe the given text
+     */
+    public QueryTokenizer tokenize(String text) {
+        buffer.setLength(0);
+        placeholders.resetQuick();
+
+        int state = NONE;
+        int placeholderStart = -1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == DUMMY_IDENTIFIER_TRIMMED.charAt(0) && text.startsWith(DUMMY_IDENTIFIER_TRIMMED, i)) {
+                i += DUMMY_IDENTIFIER_TRIMMED.length() - 1;
+                continue;
+            }
+            int position = buffer.length();
+            buffer.append(c);
+            // 等价于正则 \$\{\w+\}=|\$\{\w+\} =，失败时当前字符可能是下一次匹配的开始
+            switch (state) {
+                case DOLLAR:
+                    state = c == '{' ? BRACE : NONE;
+                    break;
+                case BRACE:
+                case NAME:
+                    if (isWordChar(c)) {
+                        state = NAME;
+                    } else {
+                        state = state == NAME && c == '}' ? CLOSED : NONE;
+                    }
+                    break;
+                case CLOSED:
+                case CLOSED_SPACE:
+                    if (c == '=') {
+                        placeholders.add(placeholderStart);
+                        placeholders.add(position + 1);
+                        state = NONE;
+                        continue;
+                    }
+                    state = state == CLOSED && c == ' ' ? CLOSED_SPACE : NONE;
+                    break;
+                default:
+                    break;
+            }
+            if (state == NONE && c == '$') {
+                state = DOLLAR;
+                placeholderStart = position;
+            }
+        }
+
+        query = buffer.toString();
+        containsQuery = findContainsQuery();
+        return this;
+    }
+
+    /**
+     * @return scanned text without the IDEA dummy identifier
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return trimmed text after the {@code ${var}=} (or {@code ${var} =}) the query consists of, null if the query is
+     * not of that form. Matches {@code split[1].trim()} of the regex split it replaces
+     */
+    @Nullable
+    public String getContainsQuery() {
+        return containsQuery;
+    }
+
+    /**
+     * The regex split drops trailing empty parts, so the query counts as a contains query only if exactly two parts
+     * are left
+     */
+    @Nullable
+    private String findContainsQuery() {
+        int placeholderCount = placeholders.size() / 2;
+        if (placeholderCount == 0) {
+            return null;
+        }
+        int parts = placeholderCount + 1;
+        int partEnd = query.length();
+        while (parts > 0 && partStart(parts - 1) == partEnd) {
+            parts--;
+            partEnd = parts > 0 ? placeholders.getQuick((parts - 1) * 2) : 0;
+        }
+        if (parts != 2) {
+            return null;
+        }
+        int secondPartEnd = placeholderCount > 1 ? placeholders.getQuick(2) : query.length();
+        return trim(query, placeholders.getQuick(1), secondPartEnd);
+    }
+
+    private int partStart(int part) {
+        return part == 0 ? 0 : placeholders.getQuick(part * 2 - 1);
+    }
+
+    /**
+     * Single pass equivalent of {@code name.trim().replaceAll("_", "").replace("-", "")}
+     */
+    public static String sanitise(String name) {
+        return sanitise(name, 0, name.length());
+    }
+
+    /**
+     * Equivalent of {@code element.trim().split("\\.", -1)}, with each segment {@link #sanitise(String) sanitised}
+     */
+    public static String[] toSanitizedPathSegments(String element) {
+        return toPathSegments(element, true);
+    }
+
+    /**
+     * Equivalent of {@code element.trim().split("\\.", -1)}, with each segment trimmed
+     */
+    public static String[] toRawPathSegments(String element) {
+        return toPathSegments(element, false);
+    }
+
+    /**
+     * @return text without the IDEA dummy identifier, the text itself if it does not contain one
+     */
+    public static String stripDummyIdentifier(String text) {
+        int index = text.indexOf(DUMMY_IDENTIFIER_TRIMMED);
+        if (index == -1) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length() - DUMMY_IDENTIFIER_TRIMMED.length());
+        int start = 0;
+        do {
+            builder.append(text, start, index);
+            start = index + DUMMY_IDENTIFIER_TRIMMED.length();
+            index = text.indexOf(DUMMY_IDENTIFIER_TRIMMED, start);
+        } while (index != -1);
+        return builder.append(text, start, text.length()).toString();
+    }
+
+    private static String[] toPathSegments(String element, boolean sanitise) {
+        // 每一段都会被 trim，因此整体的 trim 可以省略
+        int segmentCount = 1;
+        for (int i = 0; i < element.length(); i++) {
+            if (element.charAt(i) == '.') {
+                segmentCount++;
+            }
+        }
+        String[] segments = new String[segmentCount];
+        int start = 0;
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int end = segment == segmentCount - 1 ? element.length() : element.indexOf('.', start);
+            segments[segment] = sanitise ? sanitise(element, start, end) : trim(element, start, end);
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static String sanitise(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int firstRemoved = start;
+        while (firstRemoved < end && !isRemovedBySanitise(text.charAt(firstRemoved))) {
+            firstRemoved++;
+        }
+        if (firstRemoved == end) {
+            return substring(text, start, end);
+        }
+        char[] chars = new char[end - start];
+        int length = firstRemoved - start;
+        text.getChars(start, firstRemoved, chars, 0);
+        for (int i = firstRemoved + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isRemovedBySanitise(c)) {
+                chars[length++] = c;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static String trim(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return substring(text, start, end);
+    }
+
+    private static String substring(String text, int start, int end) {
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+
+    private static boolean isRemovedBySanitise(char c) {
+        return c == '_' || c == '-';
+    }
+
+    /**
+     * Same as regex {@code \w} without {@code UNICODE_CHARACTER_CLASS}
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+}
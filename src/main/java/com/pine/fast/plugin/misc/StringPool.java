@@ -0,0 +1,35 @@
+package com.pine.fast.plugin.misc;
+
+import gnu.trove.THashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * 字符串池，构建索引时对重复出现的值（type、默认值、名称片段等）去重，所有条目共享同一个实例
+ * <p>
+ * Unlike {@link String#intern()} the pool is owned by a single build & becomes garbage along with it, so strings of
+ * older snapshots are not kept alive. Not thread safe
+ *
+ * @author pine
+ */
+public class StringPool {
+
+    private final Map<String, String> pool = new THashMap<>();
+
+    /**
+     * @return pooled instance equal to the given value, null if the value is null
+     */
+    @Nullable
+    public String intern(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+}
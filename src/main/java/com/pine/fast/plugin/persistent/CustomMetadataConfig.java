@@ -0,0 +1,53 @@
+package com.pine.fast.plugin.persistent;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 自定义配置（元数据）目录，按项目保存。目录下的所有 json 文件都会被加载到提示索引中，修改后自动生效
+ *
+ * @author pine
+ */
+public class CustomMetadataConfig {
+
+    private final static String PROJECT_NAME = "com.pine.fast.plugin";
+
+    private final static String DIRECTORIES_KEY = PROJECT_NAME + "customMetadataDirectories";
+
+    public static List<String> getDirectories(Project project) {
+        String[] directories = PropertiesComponent.getInstance(project).getValues(DIRECTORIES_KEY);
+        return directories == null ? Collections.emptyList() : Arrays.asList(directories);
+    }
+
+    /**
+     * @return false if the directory was already configured
+     */
+    public static boolean addDirectory(Project project, String directory) {
+        List<String> directories = new ArrayList<>(getDirectories(project));
+        if (directories.contains(directory)) {
+            return false;
+        }
+        directories.add(directory);
+        PropertiesComponent.getInstance(project).setValues(DIRECTORIES_KEY, directories.toArray(new String[0]));
+        return true;
+    }
+
+    /**
+     * @param path file or directory path, system independent
+     * @return true if the path is within one of the configured directories
+     */
+    public static boolean isWithinDirectories(Project project, String path) {
+        for (String directory : getDirectories(project)) {
+            if (FileUtil.isAncestor(directory, path, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
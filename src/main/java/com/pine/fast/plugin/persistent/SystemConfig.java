@@ -17,6 +17,20 @@ public class SystemConfig {
 
     private final static String IS_HINT_KEY = PROJECT_NAME + "isHint";
 
+    private final static String MAX_SUGGESTIONS_KEY = PROJECT_NAME + "maxSuggestions";
+
+    /**
+     * 补全弹窗一次只展示几十条，多余的结果没有意义
+     */
+    public final static int DEFAULT_MAX_SUGGESTIONS = 200;
+
+    private final static String COMPLETION_BUDGET_MILLIS_KEY = PROJECT_NAME + "completionBudgetMillis";
+
+    /**
+     * 单次补全的时间预算，超出后返回已收集到的结果
+     */
+    public final static int DEFAULT_COMPLETION_BUDGET_MILLIS = 150;
+
     public static Boolean getHint() {
         // 直接存储 boolean 类型会有默认值，默认值一样时不会设置
         String value = PROPERTIES_COMPONENT.getValue(IS_HINT_KEY, "True");
@@ -27,4 +41,28 @@ public class SystemConfig {
         Boolean hint = getHint();
         PROPERTIES_COMPONENT.setValue(IS_HINT_KEY, BooleanUtils.toStringTrueFalse(!hint));
     }
-}
\ No newline at end of file
+
+    /**
+     * @return 单次补全最多收集的建议数，搜索收集满后即停止
+     */
+    public static int getMaxSuggestions() {
+        int maxSuggestions = PROPERTIES_COMPONENT.getInt(MAX_SUGGESTIONS_KEY, DEFAULT_MAX_SUGGESTIONS);
+        return maxSuggestions > 0 ? maxSuggestions : DEFAULT_MAX_SUGGESTIONS;
+    }
+
+    public static void setMaxSuggestions(int maxSuggestions) {
+        PROPERTIES_COMPONENT.setValue(MAX_SUGGESTIONS_KEY, maxSuggestions, DEFAULT_MAX_SUGGESTIONS);
+    }
+
+    /**
+     * @return 单次补全搜索的时间预算（毫秒），用完后返回已收集的结果；连续多次超时后暂时关闭耗时的搜索方式
+     */
+    public static int getCompletionBudgetMillis() {
+        int budgetMillis = PROPERTIES_COMPONENT.getInt(COMPLETION_BUDGET_MILLIS_KEY, DEFAULT_COMPLETION_BUDGET_MILLIS);
+        return budgetMillis > 0 ? budgetMillis : DEFAULT_COMPLETION_BUDGET_MILLIS;
+    }
+
+    public static void setCompletionBudgetMillis(int budgetMillis) {
+        PROPERTIES_COMPONENT.setValue(COMPLETION_BUDGET_MILLIS_KEY, budgetMillis, DEFAULT_COMPLETION_BUDGET_MILLIS);
+    }
+}
@@ -0,0 +1,86 @@
+package com.pine.fast.plugin.suggestion;
+
+import java.util.AbstractList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * 搜索过程中从根到当前节点的匹配路径，每一层只新增一个指向父路径的节点，而不是复制整个列表
+ * <p>
+ * Persistent & immutable: extending a path never changes it, so siblings share their parent's path. Descending costs
+ * O(1) instead of O(depth) per level. The path is only materialised into an array (once, lazily) when it is read as a
+ * list, i.e when a {@link Suggestion} is actually built from it. The last node is available without materialising
+ *
+ * @author pine
+ */
+public final class MatchPath extends AbstractList<SuggestionNode> {
+
+    @Nullable
+    private final MatchPath parent;
+    private final SuggestionNode node;
+    private final int size;
+    @Nullable
+    private volatile SuggestionNode[] materialised;
+
+    private MatchPath(@Nullable MatchPath parent, SuggestionNode node) {
+        this.parent = parent;
+        this.node = node;
+        this.size = parent == null ? 1 : parent.size + 1;
+    }
+
+    public static MatchPath of(SuggestionNode root) {
+        return new MatchPath(null, root);
+    }
+
+    /**
+     * @param path path from root till the parent of {@code node}. Any list works, but only a {@link MatchPath} is
+     *             extended without copying
+     * @return path from root till {@code node}
+     */
+    public static MatchPath extend(List<? extends SuggestionNode> path, SuggestionNode node) {
+        if (path instanceof MatchPath) {
+            return new MatchPath((MatchPath) path, node);
+        }
+        MatchPath parent = null;
+        for (SuggestionNode ancestor : path) {
+            parent = new MatchPath(parent, ancestor);
+        }
+        return new MatchPath(parent, node);
+    }
+
+    public SuggestionNode getLast() {
+        return node;
+    }
+
+    @Override
+    public SuggestionNode get(int index) {
+        if (index == size - 1) {
+            return node;
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return materialise()[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private SuggestionNode[] materialise() {
+        SuggestionNode[] nodes = materialised;
+        if (nodes == null) {
+            nodes = new SuggestionNode[size];
+            MatchPath current = this;
+            for (int i = size - 1; i >= 0; i--) {
+                assert current != null;
+                nodes[i] = current.node;
+                current = current.parent;
+            }
+            materialised = nodes;
+        }
+        return nodes;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.pine.fast.plugin.suggestion;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次补全请求的时间预算，搜索在预算用完后停止，返回已收集到的结果
+ * <p>
+ * Searches poll {@link #isExhausted()} as often as they check whether they are done, so the clock is only read every
+ * {@link #CLOCK_READ_INTERVAL} polls. Once exhausted, a budget stays exhausted. Time {@link #exclude(long) excluded} by
+ * the request, e.g the time spent handing results to the caller, does not count. Not thread safe, one instance per
+ * request & thread, see {@link #fork()}
+ *
+ * @author pine
+ */
+public final class SearchBudget {
+
+    /**
+     * Never exhausted, used by searches that are not bound by a keystroke
+     */
+    public static final SearchBudget UNLIMITED = new SearchBudget(Long.MAX_VALUE, false);
+
+    private static final int CLOCK_READ_INTERVAL = 32;
+
+    private final long startNanos;
+    private final long budgetNanos;
+    private final boolean limited;
+    /**
+     * Shared with the forks
+     */
+    private final AtomicLong excludedNanos;
+    private int pollsTillClockRead;
+    private boolean exhausted;
+
+    private SearchBudget(long budgetNanos, boolean limited) {
+        this(System.nanoTime(), budgetNanos, limited, new AtomicLong());
+    }
+
+    private SearchBudget(long startNanos, long budgetNanos, boolean limited, AtomicLong excludedNanos) {
+        this.startNanos = startNanos;
+        this.budgetNanos = budgetNanos;
+        this.limited = limited;
+        this.excludedNanos = excludedNanos;
+    }
+
+    /**
+     * @return budget that starts now
+     */
+    public static SearchBudget ofMillis(long millis) {
+        return new SearchBudget(TimeUnit.MILLISECONDS.toNanos(millis), true);
+    }
+
+    public boolean isExhausted() {
+        if (!limited || exhausted) {
+            return exhausted;
+        }
+        if (--pollsTillClockRead <= 0) {
+            pollsTillClockRead = CLOCK_READ_INTERVAL;
+            exhausted = getElapsedNanos() >= budgetNanos;
+        }
+        return exhausted;
+    }
+
+    /**
+     * Takes time the request did not spend searching off the budget, of this budget & all its forks
+     */
+    public void exclude(long nanos) {
+        if (limited) {
+            excludedNanos.addAndGet(nanos);
+        }
+    }
+
+    void markExhausted() {
+        if (limited) {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * @return budget with the same deadline, for a part of the search that runs on another thread
+     */
+    public SearchBudget fork() {
+        if (!limited) {
+            return this;
+        }
+        SearchBudget fork = new SearchBudget(startNanos, budgetNanos, true, excludedNanos);
+        fork.exhausted = exhausted;
+        return fork;
+    }
+
+    /**
+     * @return time spent searching so far, without the excluded time
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+    }
+
+    private long getElapsedNanos() {
+        return System.nanoTime() - startNanos - excludedNanos.get();
+    }
+
+}
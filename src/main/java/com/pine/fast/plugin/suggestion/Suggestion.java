@@ -21,6 +21,7 @@ import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadata
 import java.util.List;
 import javax.annotation.Nullable;
 import javax.swing.Icon;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -34,8 +35,6 @@ import org.jetbrains.annotations.NotNull;
 @ToString
 public class Suggestion implements Comparable<Suggestion> {
 
-    public static final String PERIOD_DELIMITER = "\\.";
-
     /**
      * 根据建议节点拼接代码提示
      */
@@ -63,19 +62,15 @@ public class Suggestion implements Comparable<Suggestion> {
                         presentation.setItemTextBold(true);
                     }
 
-                    String shortDescription;
                     if (StringUtils.isNotEmpty(suggestion.defaultValue)) {
-                        shortDescription = shortenTextWithEllipsis(suggestion.defaultValue, 60, 0, true);
                         TextAttributes attrs =
                                 EditorColorsManager.getInstance().getGlobalScheme().getAttributes(SCALAR_TEXT);
 //            presentation.setTailText("=" + shortDescription, attrs.getForegroundColor());
-                        presentation.setTailText(" (" + shortDescription + ")", attrs.getForegroundColor());
+                        presentation.setTailText(suggestion.getDefaultValueTailText(), attrs.getForegroundColor());
                     }
 
                     if (StringUtils.isNotEmpty(suggestion.description)) {
-                        presentation
-                                .appendTailText(" " + getFirstSentenceWithoutDot(suggestion.description),
-                                        true);
+                        presentation.appendTailText(suggestion.getDescriptionTailText(), true);
                     }
 
                     if (suggestion.shortType != null) {
@@ -127,6 +122,16 @@ public class Suggestion implements Comparable<Suggestion> {
 
     private String pathDotDelimitedRootToLeaf;
 
+    /**
+     * Tail texts of the renderer, computed on first use. Suggestions of the frozen index are shared by all searches of a
+     * snapshot, unlike their lookup elements, so these are only computed once per snapshot. Immutable strings, a racy
+     * initialisation at worst computes them twice
+     */
+    @Getter(AccessLevel.NONE)
+    private String defaultValueTailText;
+    @Getter(AccessLevel.NONE)
+    private String descriptionTailText;
+
     /**
      * 是否追加冒号
      */
@@ -156,6 +161,10 @@ public class Suggestion implements Comparable<Suggestion> {
         this.isAppendColon = isAppendColon == null || isAppendColon;
     }
 
+    /**
+     * @return new lookup element of this suggestion. Never shared: the completion & other plugins attach per lookup user
+     * data to it, only the immutable pieces it is made of are
+     */
     public LookupElementBuilder newLookupElement() {
         LookupElementBuilder builder = LookupElementBuilder.create(this, suggestionToDisplay).withCaseSensitivity(false);
         if (forValue) {
@@ -165,14 +174,32 @@ public class Suggestion implements Comparable<Suggestion> {
             if (representingDefaultValue) {
                 builder = builder.bold();
             }
-            builder = builder.withInsertHandler(fileType.newValueInsertHandler());
+            builder = builder.withInsertHandler(fileType.getValueInsertHandler());
         } else {
             builder = builder.withRenderer(CUSTOM_SUGGESTION_RENDERER)
-                    .withInsertHandler(fileType.newKeyInsertHandler());
+                    .withInsertHandler(fileType.getKeyInsertHandler());
         }
         return builder;
     }
 
+    private String getDefaultValueTailText() {
+        String tailText = defaultValueTailText;
+        if (tailText == null) {
+            tailText = " (" + shortenTextWithEllipsis(defaultValue, 60, 0, true) + ")";
+            defaultValueTailText = tailText;
+        }
+        return tailText;
+    }
+
+    private String getDescriptionTailText() {
+        String tailText = descriptionTailText;
+        if (tailText == null) {
+            tailText = " " + getFirstSentenceWithoutDot(description);
+            descriptionTailText = tailText;
+        }
+        return tailText;
+    }
+
     public String getFullPath() {
         return GenericUtil.dotDelimitedOriginalNames(matchesTopFirst);
     }
@@ -0,0 +1,209 @@
+package com.pine.fast.plugin.suggestion;
+
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * 单次搜索的结果收集器，在整个搜索过程中只有一个实例，替代每一层各自创建 {@link TreeSet} 再向上合并的方式
+ * <p>
+ * Bounded: once {@link #getLimit()} distinct suggestions are collected, further ones are dropped & searches are
+ * expected to stop as soon as they see {@link #isFull()}. Frozen index nodes are visited in sorted order, so the
+ * suggestions collected till then are the first ones in path order. A collector can also carry the {@link
+ * SearchBudget} of the request, in which case it reports full once the budget is spent & the searches return what was
+ * collected so far. An optional sink is told about every suggestion the moment it is accepted, which lets results be
+ * shown while the search is still running. An optional filter (the prefix matcher of the completion) rejects
+ * suggestions that would be thrown away anyway; searches ask {@link #rejects(String)} before building a suggestion, so
+ * that rejected ones are never built. Not thread safe
+ *
+ * @author pine
+ */
+public class SuggestionCollector {
+
+    private final int limit;
+    private final SearchBudget budget;
+    /**
+     * True while completions keep running out of time, searches then skip their expensive parts: the contains scan &
+     * the walk below nodes that did not match the query
+     */
+    private final boolean degraded;
+    @Nullable
+    private final Consumer<Suggestion> sink;
+    /**
+     * Tests the text a suggestion is displayed with
+     */
+    @Nullable
+    private final Predicate<String> filter;
+    private final SortedSet<Suggestion> suggestions = new TreeSet<>();
+    /**
+     * Number of suggestions offered so far, including duplicates, rejected ones & the ones dropped after the limit was
+     * reached. Rejections count as offered so that the shadowing of deeper matches stays as it is without a filter
+     */
+    private int offeredCount;
+    private int rejectedCount;
+    private boolean truncated;
+
+    public SuggestionCollector(int limit) {
+        this(limit, SearchBudget.UNLIMITED, false);
+    }
+
+    public SuggestionCollector(int limit, SearchBudget budget, boolean degraded) {
+        this(limit, budget, degraded, null, null);
+    }
+
+    /**
+     * @param sink   receives every distinct suggestion as soon as it is collected, never the ones dropped over the limit
+     * @param filter tells whether a suggestion displayed with the given text is wanted at all
+     */
+    public SuggestionCollector(int limit, SearchBudget budget, boolean degraded, @Nullable Consumer<Suggestion> sink,
+                               @Nullable Predicate<String> filter) {
+        this.limit = limit;
+        this.budget = budget;
+        this.degraded = degraded;
+        this.sink = sink;
+        this.filter = filter;
+    }
+
+    public static SuggestionCollector unbounded() {
+        return new SuggestionCollector(Integer.MAX_VALUE);
+    }
+
+    public void add(Suggestion suggestion) {
+        if (!rejects(suggestion.getSuggestionToDisplay())) {
+            addMatched(suggestion);
+        }
+    }
+
+    /**
+     * @return true if suggestions are filtered, i.e if it is worth computing their text before building them
+     */
+    public boolean isFiltered() {
+        return filter != null;
+    }
+
+    /**
+     * Lets a search check a suggestion before building it. A rejection is counted as an offered suggestion
+     *
+     * @param suggestionToDisplay text the suggestion would be displayed with
+     * @return true if the suggestion is not wanted & should not be built
+     */
+    public boolean rejects(String suggestionToDisplay) {
+        if (filter == null || filter.test(suggestionToDisplay)) {
+            return false;
+        }
+        offeredCount++;
+        rejectedCount++;
+        return true;
+    }
+
+    /**
+     * Same as {@link #add(Suggestion)}, for a suggestion that already passed {@link #rejects(String)}
+     */
+    public void addMatched(Suggestion suggestion) {
+        offeredCount++;
+        if (suggestions.size() < limit) {
+            if (suggestions.add(suggestion) && sink != null) {
+                sink.accept(suggestion);
+            }
+        } else if (!suggestions.contains(suggestion)) {
+            truncated = true;
+        }
+    }
+
+    public void addAll(@Nullable Collection<Suggestion> suggestions) {
+        if (suggestions != null) {
+            for (Suggestion suggestion : suggestions) {
+                add(suggestion);
+            }
+        }
+    }
+
+    /**
+     * @return empty collector with the same limit, budget & mode, for a part of the search that runs on another thread.
+     * Its suggestions are expected to be {@link #merge(SuggestionCollector) merged} back, which is when they reach the
+     * sink of this collector
+     */
+    public SuggestionCollector fork() {
+        return new SuggestionCollector(limit, budget.fork(), degraded, null, filter);
+    }
+
+    /**
+     * Adds the suggestions of a forked collector, as if they had been offered to this one. Merging the forks in the
+     * order of the ranges they searched keeps the result identical to a sequential search
+     */
+    public void merge(SuggestionCollector fork) {
+        for (Suggestion suggestion : fork.suggestions) {
+            addMatched(suggestion);
+        }
+        offeredCount += fork.offeredCount - fork.suggestions.size();
+        rejectedCount += fork.rejectedCount;
+        truncated |= fork.truncated;
+        if (fork.isOutOfTime()) {
+            budget.markExhausted();
+        }
+    }
+
+    /**
+     * @return true if searches should stop, either because the limit is reached or the budget is spent
+     */
+    public boolean isFull() {
+        return suggestions.size() >= limit || budget.isExhausted();
+    }
+
+    /**
+     * @return true if the search was cut short by the time budget, the suggestions are then incomplete
+     */
+    public boolean isOutOfTime() {
+        return budget.isExhausted();
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public boolean isEmpty() {
+        return suggestions.isEmpty();
+    }
+
+    /**
+     * @return true if suggestions were dropped because the limit was reached
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Lets a search find out whether a sub search produced anything, even if it was all duplicates or dropped
+     */
+    public int getOfferedCount() {
+        return offeredCount;
+    }
+
+    /**
+     * @return number of suggestions the filter rejected, i.e the ones that were not built or not shown
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public SortedSet<Suggestion> getSuggestions() {
+        return suggestions;
+    }
+
+    /**
+     * @return collected suggestions, null if there are none. Matches the return convention of the {@link
+     * SuggestionNode} search methods
+     */
+    @Nullable
+    public SortedSet<Suggestion> getSuggestionsOrNull() {
+        return suggestions.isEmpty() ? null : suggestions;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.pine.fast.plugin.suggestion;
 
 import com.intellij.openapi.module.Module;
+import com.pine.fast.plugin.misc.QueryTokenizer;
 import com.pine.fast.plugin.suggestion.completion.FileType;
 import java.util.List;
 import java.util.Set;
@@ -11,7 +12,7 @@ public interface SuggestionNode
         extends OriginalNameProvider, NameProvoder {
 
     static String sanitise(String name) {
-        return name.trim().replaceAll("_", "").replace("-", "");
+        return QueryTokenizer.sanitise(name);
 //        return name.trim().replaceAll("_", "").replace("-", "").toLowerCase();
     }
 
@@ -66,6 +67,23 @@ public interface SuggestionNode
                                                            List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
                                                            int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude);
 
+    /**
+     * Same as {@link #findKeySuggestionsForQueryPrefix(Module, FileType, List, int, String[], int, Set)}, but adds the
+     * suggestions to the {@code collector} shared by the whole search instead of returning them. Implementations
+     * should stop as soon as the collector is full
+     *
+     * @param collector collector of the current search
+     */
+    default void collectKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+                                                     List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+                                                     int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude,
+                                                     SuggestionCollector collector) {
+        if (!collector.isFull()) {
+            collector.addAll(findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe, numOfAncestors,
+                    querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude));
+        }
+    }
+
     SortedSet<Suggestion> findKeySuggestionsForContains(Module module, FileType fileType,
                                                             List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String querySegmentPrefixes);
 
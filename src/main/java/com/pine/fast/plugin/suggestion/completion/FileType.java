@@ -11,19 +11,25 @@ public enum FileType {
      */
     YAML;
 
-    public InsertHandler<LookupElement> newKeyInsertHandler() {
+    /**
+     * 插入处理器没有状态，所有补全项共用同一个实例
+     */
+    private static final InsertHandler<LookupElement> YAML_KEY_INSERT_HANDLER = new YamlKeyInsertHandler();
+    private static final InsertHandler<LookupElement> YAML_VALUE_INSERT_HANDLER = new YamlValueInsertHandler();
+
+    public InsertHandler<LookupElement> getKeyInsertHandler() {
         switch (this) {
             case YAML:
-                return new YamlKeyInsertHandler();
+                return YAML_KEY_INSERT_HANDLER;
             default:
                 return null;
         }
     }
 
-    public InsertHandler<LookupElement> newValueInsertHandler() {
+    public InsertHandler<LookupElement> getValueInsertHandler() {
         switch (this) {
             case YAML:
-                return new YamlValueInsertHandler();
+                return YAML_VALUE_INSERT_HANDLER;
             default:
                 return null;
         }
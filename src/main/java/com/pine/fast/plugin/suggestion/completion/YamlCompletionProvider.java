@@ -5,22 +5,22 @@ import static java.util.Objects.requireNonNull;
 import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.util.ProcessingContext;
-import com.pine.fast.plugin.misc.GenericUtil;
 import com.pine.fast.plugin.misc.PsiCustomUtil;
+import com.pine.fast.plugin.misc.QueryTokenizer;
 import com.pine.fast.plugin.suggestion.SuggestionNode;
 import com.pine.fast.plugin.suggestion.service.SuggestionService;
 import gnu.trove.THashSet;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -50,6 +50,17 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
             return;
         }
 
+        if (!service.isIndexReady()) {
+            if (service.getIndexReadyFuture().isCompletedExceptionally()) {
+                // retried on reload/metadata change only, not on every keystroke
+                resultSet.addLookupAdvertisement("Fast Yaml 索引加载失败，请重新加载自定义配置");
+                return;
+            }
+            service.buildIndexInBackground(project);
+            resultSet.addLookupAdvertisement("Fast Yaml 索引加载中，请稍候...");
+            return;
+        }
+
         // 已经存在的key，需要进行排除
         Set<String> siblingsToExclude = null;
 
@@ -85,9 +96,9 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
             }
         }
 
-        List<LookupElementBuilder> suggestions;
         // For top level element, since there is no parent parentKeyValue would be null
-        String queryWithDotDelimitedPrefixes = GenericUtil.truncateIdeaDummyIdentifier(element);
+        QueryTokenizer tokenizer = QueryTokenizer.forCurrentThread().tokenize(element.getText());
+        String queryWithDotDelimitedPrefixes = tokenizer.getQuery();
 
         List<String> ancestralKeys = null;
         PsiElement context = elementContext;
@@ -96,28 +107,33 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
                 if (ancestralKeys == null) {
                     ancestralKeys = new ArrayList<>();
                 }
-                ancestralKeys.add(0, GenericUtil.truncateIdeaDummyIdentifier(((YAMLKeyValue) context).getKeyText()));
+                ancestralKeys.add(0, QueryTokenizer.stripDummyIdentifier(((YAMLKeyValue) context).getKeyText()));
             }
             context = requireNonNull(context).getParent();
         } while (context != null);
 
-        String s = "\\$\\{\\w+\\}=|\\$\\{\\w+\\} =";
-        boolean contains = false;
+        // ${var}=xxx 形式时，只按 = 之后的内容匹配
+        String containsQuery = tokenizer.getContainsQuery();
+        boolean contains = containsQuery != null;
+        String handleStr = contains ? containsQuery : queryWithDotDelimitedPrefixes;
 
-        String handleStr = queryWithDotDelimitedPrefixes;
-        String[] split = queryWithDotDelimitedPrefixes.split(s);
-        if (split.length == 2) {
-            contains = true;
-            handleStr = split[1].trim();
-        }
-
-        suggestions = service
+        // 结果找到一个就推送一个，弹窗在第一批结果到达时即可展示；前缀匹配器交给搜索，不匹配的建议不会被构建
+        CompletionResultSet suggestionResultSet = contains ? resultSet.withPrefixMatcher(handleStr) : resultSet;
+        int suggestionCount = service
                 .findSuggestionsForQueryPrefix(project, module, FileType.YAML, element, ancestralKeys,
-                        queryWithDotDelimitedPrefixes, handleStr, siblingsToExclude);
-
-        if (suggestions != null) {
-            Consumer<LookupElementBuilder> addElement = contains ?  resultSet.withPrefixMatcher(handleStr)::addElement :resultSet::addElement;
-            suggestions.forEach(addElement);
+                        queryWithDotDelimitedPrefixes, handleStr, siblingsToExclude,
+                        suggestionResultSet.getPrefixMatcher(), suggestionResultSet::addElement);
+
+        if (suggestionCount == 0 && !contains) {
+            // 精确匹配没有结果时，再尝试容错匹配（拼写错误）
+            List<LookupElement> fuzzySuggestions = service
+                    .findFuzzySuggestionsForQueryPrefix(project, module, FileType.YAML, ancestralKeys,
+                            queryWithDotDelimitedPrefixes, siblingsToExclude);
+            if (fuzzySuggestions != null) {
+                CompletionResultSet fuzzyResultSet =
+                        resultSet.withPrefixMatcher(new AcceptAllPrefixMatcher(resultSet.getPrefixMatcher().getPrefix()));
+                fuzzySuggestions.forEach(fuzzyResultSet::addElement);
+            }
         }
     }
 
@@ -129,4 +145,27 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
         return siblingsToExclude;
     }
 
+    /**
+     * Fuzzy suggestions are already filtered by edit distance & would be dropped by the default matcher, as they do not
+     * start with what was typed
+     */
+    private static class AcceptAllPrefixMatcher extends PrefixMatcher {
+
+        AcceptAllPrefixMatcher(String prefix) {
+            super(prefix);
+        }
+
+        @Override
+        public boolean prefixMatches(@NotNull String name) {
+            return true;
+        }
+
+        @NotNull
+        @Override
+        public PrefixMatcher cloneWithPrefix(@NotNull String prefix) {
+            return new AcceptAllPrefixMatcher(prefix);
+        }
+
+    }
+
 }
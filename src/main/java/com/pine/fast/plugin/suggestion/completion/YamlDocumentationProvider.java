@@ -8,7 +8,6 @@ public class YamlDocumentationProvider extends AbstractDocumentationProvider {
 
     @Override
     public String generateDoc(PsiElement element, @Nullable PsiElement originalElement) {
-        System.out.println("generateDoc");
         return super.generateDoc(element, originalElement);
     }
 }
@@ -0,0 +1,61 @@
+package com.pine.fast.plugin.suggestion.component;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.pine.fast.plugin.persistent.CustomMetadataConfig;
+import com.pine.fast.plugin.suggestion.service.SuggestionService;
+import gnu.trove.THashSet;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 监听自定义配置目录下的文件变化，只把变化的文件交给索引做增量更新
+ *
+ * @author pine
+ */
+public class CustomMetadataFileListener implements BulkFileListener {
+
+    private final Project project;
+
+    public CustomMetadataFileListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        if (CustomMetadataConfig.getDirectories(project).isEmpty()) {
+            return;
+        }
+        Set<String> changedPaths = new THashSet<>();
+        for (VFileEvent event : events) {
+            addIfCustomMetadata(changedPaths, event.getPath());
+            // the old location of a moved/renamed file has to be dropped from the index as well
+            if (event instanceof VFileMoveEvent) {
+                addIfCustomMetadata(changedPaths, ((VFileMoveEvent) event).getOldPath());
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                addIfCustomMetadata(changedPaths, ((VFilePropertyChangeEvent) event).getOldPath());
+            }
+        }
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        SuggestionService service = SuggestionService.getInstance(project);
+        if (service.isIndexReady()) {
+            service.reloadCustomMetadata(project, changedPaths);
+        } else {
+            // nothing to update incrementally yet, e.g the last build failed. The metadata changed, lets build again
+            service.reloadIndex(project);
+        }
+    }
+
+    private void addIfCustomMetadata(Set<String> changedPaths, String path) {
+        if (CustomMetadataConfig.isWithinDirectories(project, path)) {
+            changedPaths.add(path);
+        }
+    }
+
+}
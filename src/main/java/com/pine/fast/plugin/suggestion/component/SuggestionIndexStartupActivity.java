@@ -0,0 +1,20 @@
+package com.pine.fast.plugin.suggestion.component;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.pine.fast.plugin.suggestion.service.SuggestionService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 项目打开时在后台构建提示索引，避免在第一次触发代码提示时才加载
+ *
+ * @author pine
+ */
+public class SuggestionIndexStartupActivity implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        SuggestionService.getInstance(project).buildIndexInBackground(project);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import gnu.trove.TIntArrayList;
+import java.util.function.IntFunction;
+import javax.annotation.Nullable;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+/**
+ * 驼峰缩写索引：按每个驼峰段（hump）的首字母建立索引，输入 {@code mtewo} 即可找到 {@code moveToElementWithOffset}
+ * <p>
+ * Initials are lower cased & only letters/digits count, so {@code $.getCurrentWindowHandle()} is found with {@code
+ * gcwh} & {@code qND} finds {@code queryNotDisplayed}. A query matches all entries whose initials start with it.
+ * Entries are identified by their id, the position they were given at build time. Immutable once built
+ *
+ * @author pine
+ */
+public final class AbbreviationIndex {
+
+    /**
+     * Shorter queries would match a large share of all entries & are better served by the prefix search
+     */
+    private static final int MIN_QUERY_LENGTH = 2;
+
+    private final Trie<String, TIntArrayList> initialsToEntries;
+
+    private AbbreviationIndex(Trie<String, TIntArrayList> initialsToEntries) {
+        this.initialsToEntries = initialsToEntries;
+    }
+
+    /**
+     * @param size    number of entries, ids go from 0 to size - 1
+     * @param keyText text of the entry with the given id the initials are taken from, null to leave the entry out
+     */
+    public static AbbreviationIndex build(int size, IntFunction<String> keyText) {
+        Trie<String, TIntArrayList> initialsToEntries = new PatriciaTrie<>();
+        for (int id = 0; id < size; id++) {
+            String text = keyText.apply(id);
+            if (text == null) {
+                continue;
+            }
+            String initials = toInitials(text);
+            if (initials.length() >= MIN_QUERY_LENGTH) {
+                initialsToEntries.computeIfAbsent(initials, key -> new TIntArrayList(1)).add(id);
+            }
+        }
+        return new AbbreviationIndex(initialsToEntries);
+    }
+
+    /**
+     * @param query abbreviation typed by the user
+     * @return ids of the entries whose initials start with the query, empty if the query is not an abbreviation
+     */
+    public TIntArrayList find(@Nullable String query) {
+        TIntArrayList matches = new TIntArrayList();
+        if (query == null) {
+            return matches;
+        }
+        String normalised = normalise(query);
+        if (normalised.length() < MIN_QUERY_LENGTH) {
+            return matches;
+        }
+        for (TIntArrayList ids : initialsToEntries.prefixMap(normalised).values()) {
+            matches.add(ids.toNativeArray());
+        }
+        return matches;
+    }
+
+    /**
+     * @return true if the initials of the text start with the query, same as an index lookup for a single entry
+     */
+    public static boolean matches(String text, String query) {
+        String normalised = normalise(query);
+        return normalised.length() >= MIN_QUERY_LENGTH && toInitials(text).startsWith(normalised);
+    }
+
+    /**
+     * @return true if the query is long enough to be looked up as an abbreviation. Only then does it match every entry
+     * a query extending it matches
+     */
+    public static boolean isAbbreviation(String query) {
+        return normalise(query).length() >= MIN_QUERY_LENGTH;
+    }
+
+    public int size() {
+        return initialsToEntries.size();
+    }
+
+    /**
+     * A hump starts at the first letter/digit after any other character, at an upper case letter following a lower
+     * case letter/digit & at a digit following a letter
+     */
+    static String toInitials(String text) {
+        StringBuilder initials = new StringBuilder();
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                boolean humpStart = !Character.isLetterOrDigit(previous)
+                        || (Character.isUpperCase(c) && !Character.isUpperCase(previous))
+                        || (Character.isDigit(c) && Character.isLetter(previous));
+                if (humpStart) {
+                    initials.append(Character.toLowerCase(c));
+                }
+            }
+            previous = c;
+        }
+        return initials.toString();
+    }
+
+    private static String normalise(String query) {
+        StringBuilder normalised = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalised.append(Character.toLowerCase(c));
+            }
+        }
+        return normalised.toString();
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.suggestion.metadata.ArenaSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataPropertySuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadata;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+/**
+ * 自定义元数据的增量索引。以一个已发布的快照为基础，按文件（source）增量地加入/移除条目，无需整体重建
+ * <p>
+ * Every source is recorded in the `belongsTo` of the nodes it contributes. Removing a source walks only the roots it
+ * contributed to via {@link MetadataSuggestionNode#removeRefCascadeDown(String)}, updating a source removes its old
+ * entries & adds the new ones with {@link MetadataSuggestionNode#addRefCascadeTillRoot(String)}.
+ * <p>
+ * Published snapshots are never modified: a root is thawed into a modifiable copy the first time it is touched after a
+ * publish (copy on write) & frozen again on the next publish, roots that are not touched keep sharing their arena
+ * between consecutive snapshots. Not thread safe, all calls must come from a single writer
+ * <p>
+ * Hints a source set on properties of other sources are taken off again when the source is removed, unless another
+ * source replaced them in the meantime
+ *
+ * @author pine
+ */
+public class IncrementalSuggestionIndex {
+
+    private final Trie<String, MetadataSuggestionNode> rootSearchIndex;
+    private final Trie<String, MetadataSuggestionNode> simpleSearchIndex;
+
+    /**
+     * Source ref -> what the source contributed to the index
+     */
+    private final Map<String, Contribution> refToContribution = new THashMap<>();
+
+    /**
+     * @param base snapshot to build on, stays untouched
+     */
+    public IncrementalSuggestionIndex(SuggestionIndexSnapshot base) {
+        this.rootSearchIndex = new PatriciaTrie<>();
+        this.simpleSearchIndex = new PatriciaTrie<>();
+        for (int ordinal = 0; ordinal < base.getTopLevelCount(); ordinal++) {
+            Trie<String, MetadataSuggestionNode> index = base.isSimple(ordinal) ? simpleSearchIndex : rootSearchIndex;
+            index.put(base.getTopLevelName(ordinal), base.getTopLevel(ordinal));
+        }
+    }
+
+    /**
+     * Adds the source to the index, replacing the entries of the previous content of the same source if any. The
+     * content is parsed before anything is removed, so a source that can not be parsed keeps its previous entries
+     *
+     * @param source json metadata source
+     * @return false if the content did not change since it was last applied
+     */
+    public boolean applySource(SuggestionMetadataSource source) throws IOException {
+        Contribution previous = refToContribution.get(source.getRef());
+        if (previous != null && previous.contentHash.equals(source.getContentHash())) {
+            return false;
+        }
+        SpringConfigurationMetadata metadata = SuggestionIndexBuilder.readMetadata(source.newInputStream());
+        if (previous != null) {
+            removeContribution(source.getRef(), previous);
+        }
+
+        OverlayBuilder builder = new OverlayBuilder();
+        builder.addMetadata(metadata, source.getRef());
+        builder.resolveProperties();
+        refToContribution.put(source.getRef(), new Contribution(source.getContentHash(), metadata));
+        return true;
+    }
+
+    /**
+     * @param ref reference of the source
+     * @return false if the source was not part of the index
+     */
+    public boolean removeSource(String ref) {
+        Contribution contribution = refToContribution.remove(ref);
+        if (contribution == null) {
+            return false;
+        }
+        removeContribution(ref, contribution);
+        return true;
+    }
+
+    /**
+     * @return references of all sources currently applied
+     */
+    public Set<String> getSourceRefs() {
+        return Collections.unmodifiableSet(refToContribution.keySet());
+    }
+
+    /**
+     * @return new snapshot with the current state. Further changes go to fresh copies & do not affect the snapshot
+     */
+    public SuggestionIndexSnapshot publish() {
+        SuggestionIndexBuilder.freezeModifiedRoots(rootSearchIndex);
+        SuggestionIndexBuilder.freezeModifiedRoots(simpleSearchIndex);
+        return new SuggestionIndexSnapshot(rootSearchIndex, simpleSearchIndex);
+    }
+
+    private void removeContribution(String ref, Contribution contribution) {
+        removeHints(contribution.hints);
+        removeRef(rootSearchIndex, contribution.rootNames, ref);
+        removeRef(simpleSearchIndex, contribution.simpleNames, ref);
+    }
+
+    private void removeRef(Trie<String, MetadataSuggestionNode> index, Set<String> names, String ref) {
+        for (String name : names) {
+            ProgressManager.checkCanceled();
+            MetadataSuggestionNode node = getForUpdate(index, name);
+            if (node != null && node.removeRefCascadeDown(ref)) {
+                index.remove(name);
+            }
+        }
+    }
+
+    private void removeHints(List<SpringConfigurationMetadataHint> hints) {
+        for (SpringConfigurationMetadataHint hint : hints) {
+            ProgressManager.checkCanceled();
+            String[] pathSegments = GenericUtil.toSanitizedPathSegments(hint.getExpectedPropertyName());
+            MetadataSuggestionNode root = rootSearchIndex.get(pathSegments[0]);
+            // checked on the node as it is, so that roots without the hint are not copied
+            if (root == null || !hasHint(root.findDeepestMetadataNode(pathSegments, 1, true), hint)) {
+                continue;
+            }
+            MetadataSuggestionNode node =
+                    getForUpdate(rootSearchIndex, pathSegments[0]).findDeepestMetadataNode(pathSegments, 1, true);
+            MetadataPropertySuggestionNode.class.cast(node).getProperty().removeHint(hint);
+        }
+    }
+
+    private static boolean hasHint(@Nullable MetadataSuggestionNode node, SpringConfigurationMetadataHint hint) {
+        SpringConfigurationMetadataProperty property = null;
+        if (node instanceof ArenaSuggestionNode) {
+            property = ArenaSuggestionNode.class.cast(node).getProperty();
+        } else if (node instanceof MetadataPropertySuggestionNode) {
+            property = MetadataPropertySuggestionNode.class.cast(node).getProperty();
+        }
+        return property != null && property.hasHint(hint);
+    }
+
+    private MetadataSuggestionNode getForUpdate(Trie<String, MetadataSuggestionNode> index, String name) {
+        MetadataSuggestionNode node = index.get(name);
+        if (node instanceof ArenaSuggestionNode) {
+            // published roots are read only, work on a modifiable copy till the next publish
+            node = node.copy(null);
+            index.put(name, node);
+        }
+        return node;
+    }
+
+    /**
+     * Adds to the tries of this index, copying existing roots before they get modified
+     */
+    private class OverlayBuilder extends SuggestionIndexBuilder {
+
+        OverlayBuilder() {
+            super(rootSearchIndex, simpleSearchIndex);
+        }
+
+        @Override
+        protected MetadataSuggestionNode getForUpdate(Trie<String, MetadataSuggestionNode> index, String name) {
+            return IncrementalSuggestionIndex.this.getForUpdate(index, name);
+        }
+
+    }
+
+    private static class Contribution {
+
+        private final String contentHash;
+        /**
+         * Sanitised names of the roots the source contributed to
+         */
+        private final Set<String> rootNames = new THashSet<>();
+        private final Set<String> simpleNames = new THashSet<>();
+        /**
+         * Hints of the source, removed from the properties they were set on along with the source
+         */
+        private final List<SpringConfigurationMetadataHint> hints;
+
+        Contribution(String contentHash, SpringConfigurationMetadata metadata) {
+            this.contentHash = contentHash;
+            List<SpringConfigurationMetadataProperty> properties = metadata.getProperties();
+            if (properties != null) {
+                for (SpringConfigurationMetadataProperty property : properties) {
+                    rootNames.add(GenericUtil.toSanitizedPathSegments(property.getName())[0]);
+                }
+            }
+            List<SpringConfigurationMetadataProperty> simples = metadata.getSimples();
+            if (simples != null) {
+                for (SpringConfigurationMetadataProperty simple : simples) {
+                    simpleNames.add(simple.getName());
+                }
+            }
+            this.hints = metadata.getHints() != null ? metadata.getHints() : Collections.emptyList();
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.DEPRECATION_ERROR;
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.DEPRECATION_NONE;
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.DEPRECATION_UNKNOWN_LEVEL;
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.DEPRECATION_WARNING;
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.NULL_REF;
+import static com.pine.fast.plugin.suggestion.index.SuggestionIndexFormat.SINGLE_VALUE;
+
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecation;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecationLevel;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHintValue;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProvider;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderType;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.Getter;
+
+/**
+ * 从 {@link SuggestionIndexFormat#RESOURCE} 读取的预编译索引。读取过程只是顺序解码，不涉及反射，也不需要排序，
+ * 树结构直接由 {@link #nodeParents} 等数组给出
+ *
+ * @author pine
+ */
+@Getter
+public class PrebuiltSuggestionIndex {
+
+    private final String[] strings;
+    private final SpringConfigurationMetadataProperty[] properties;
+    private final SpringConfigurationMetadataProperty[] simples;
+    private final SpringConfigurationMetadataHint[] hints;
+
+    private final int[] nodeParents;
+    private final int[] nodeOriginalNames;
+    private final int[] nodeProperties;
+    private final int[] nodeFirstChildren;
+    private final int[] nodeNextSiblings;
+
+    private PrebuiltSuggestionIndex(DataInputStream in) throws IOException {
+        if (in.readInt() != SuggestionIndexFormat.MAGIC) {
+            throw new IOException("Not a suggestion index");
+        }
+        int version = in.readInt();
+        if (version != SuggestionIndexFormat.VERSION) {
+            throw new IOException("Unsupported suggestion index version " + version);
+        }
+
+        strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        properties = readProperties(in);
+        simples = readProperties(in);
+
+        hints = new SpringConfigurationMetadataHint[in.readInt()];
+        for (int i = 0; i < hints.length; i++) {
+            hints[i] = readHint(in);
+        }
+
+        int nodeCount = in.readInt();
+        nodeParents = new int[nodeCount];
+        nodeOriginalNames = new int[nodeCount];
+        nodeProperties = new int[nodeCount];
+        nodeFirstChildren = new int[nodeCount];
+        nodeNextSiblings = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeParents[i] = in.readInt();
+            nodeOriginalNames[i] = in.readInt();
+            nodeProperties[i] = in.readInt();
+            nodeFirstChildren[i] = in.readInt();
+            nodeNextSiblings[i] = in.readInt();
+        }
+    }
+
+    public static PrebuiltSuggestionIndex read(InputStream inputStream) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1024))) {
+            return new PrebuiltSuggestionIndex(in);
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeParents.length;
+    }
+
+    public String getNodeOriginalName(int node) {
+        return strings[nodeOriginalNames[node]];
+    }
+
+    @Nullable
+    public SpringConfigurationMetadataProperty getNodeProperty(int node) {
+        int property = nodeProperties[node];
+        return property == NULL_REF ? null : properties[property];
+    }
+
+    private SpringConfigurationMetadataProperty[] readProperties(DataInputStream in) throws IOException {
+        SpringConfigurationMetadataProperty[] result = new SpringConfigurationMetadataProperty[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+            property.setName(string(in.readInt()));
+            property.setClassName(string(in.readInt()));
+            property.setDescription(string(in.readInt()));
+            property.setDefaultValue(string(in.readInt()));
+            property.setSourceType(string(in.readInt()));
+            property.setOriginalName(string(in.readInt()));
+            byte appendColon = in.readByte();
+            property.setIsAppendColon(appendColon == NULL_REF ? null : appendColon == 1);
+            byte deprecationLevel = in.readByte();
+            String reason = string(in.readInt());
+            String replacement = string(in.readInt());
+            if (deprecationLevel != DEPRECATION_NONE) {
+                SpringConfigurationMetadataDeprecation deprecation = new SpringConfigurationMetadataDeprecation();
+                if (deprecationLevel == DEPRECATION_WARNING) {
+                    deprecation.setLevel(SpringConfigurationMetadataDeprecationLevel.warning);
+                } else if (deprecationLevel == DEPRECATION_ERROR) {
+                    deprecation.setLevel(SpringConfigurationMetadataDeprecationLevel.error);
+                } else if (deprecationLevel != DEPRECATION_UNKNOWN_LEVEL) {
+                    throw new IOException("Unknown deprecation level " + deprecationLevel);
+                }
+                // DEPRECATION_UNKNOWN_LEVEL leaves the level null, the same as the json path for a level it does not know
+                deprecation.setReason(reason);
+                deprecation.setReplacement(replacement);
+                property.setDeprecation(deprecation);
+            }
+            result[i] = property;
+        }
+        return result;
+    }
+
+    private SpringConfigurationMetadataHint readHint(DataInputStream in) throws IOException {
+        SpringConfigurationMetadataHint hint = new SpringConfigurationMetadataHint();
+        hint.setName(string(in.readInt()));
+
+        SpringConfigurationMetadataHintValue[] values = new SpringConfigurationMetadataHintValue[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SpringConfigurationMetadataHintValue.builder().nameAsObjOrArray(readHintValue(in))
+                    .description(string(in.readInt())).build();
+        }
+        hint.setValues(values);
+
+        SpringConfigurationMetadataValueProvider[] providers =
+                new SpringConfigurationMetadataValueProvider[in.readInt()];
+        for (int i = 0; i < providers.length; i++) {
+            SpringConfigurationMetadataValueProvider provider = new SpringConfigurationMetadataValueProvider();
+            provider.setType(SpringConfigurationMetadataValueProviderType.valueOf(string(in.readInt())));
+            providers[i] = provider;
+        }
+        hint.setProviders(providers);
+
+        // builds the value lookup/trie, the same as gson would have after deserialization
+        hint.doOnGsonDeserialization();
+        return hint;
+    }
+
+    /**
+     * 数组值还原为 list，与 json 解析出的一致
+     */
+    @Nullable
+    private Object readHintValue(DataInputStream in) throws IOException {
+        int elementCount = in.readInt();
+        if (elementCount == SINGLE_VALUE) {
+            return string(in.readInt());
+        }
+        List<String> elements = new ArrayList<>(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            elements.add(string(in.readInt()));
+        }
+        return elements;
+    }
+
+    @Nullable
+    private String string(int ref) {
+        return ref == NULL_REF ? null : strings[ref];
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.misc.StringPool;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecation;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecationLevel;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHintValue;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProvider;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderParams;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderTypeDeserializer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式读取元数据 json，每读完一个 property/simple/hint 就交给 {@link MetadataConsumer}，不生成完整的对象图
+ * <p>
+ * Only the entry being read is held in memory, so peak heap does not grow with the size of the metadata. Hints are the
+ * exception: they refer to properties that may appear later in the document, so they are handed over once the whole
+ * document is read. Unknown attributes (e.g. `groups`) are skipped
+ *
+ * @author pine
+ */
+public class StreamingMetadataReader {
+
+    /**
+     * Receives entries in document order, except for hints which come last
+     */
+    public interface MetadataConsumer {
+
+        void onProperty(SpringConfigurationMetadataProperty property);
+
+        void onSimple(SpringConfigurationMetadataProperty simple);
+
+        void onHint(SpringConfigurationMetadataHint hint);
+
+    }
+
+    private final JsonReader reader;
+    /**
+     * Repeated values (types, defaults, names e.t.c) are shared across entries
+     */
+    private final StringPool stringPool;
+
+    private StreamingMetadataReader(InputStream inputStream, StringPool stringPool) {
+        this.reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream, UTF_8)));
+        this.stringPool = stringPool;
+    }
+
+    public static void read(InputStream inputStream, MetadataConsumer consumer, StringPool stringPool)
+            throws IOException {
+        new StreamingMetadataReader(inputStream, stringPool).readDocument(consumer);
+    }
+
+    private void readDocument(MetadataConsumer consumer) throws IOException {
+        List<SpringConfigurationMetadataHint> hints = new ArrayList<>();
+        try (JsonReader in = reader) {
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "properties":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            ProgressManager.checkCanceled();
+                            consumer.onProperty(readProperty());
+                        }
+                        in.endArray();
+                        break;
+                    case "simples":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            ProgressManager.checkCanceled();
+                            consumer.onSimple(readProperty());
+                        }
+                        in.endArray();
+                        break;
+                    case "hints":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            hints.add(readHint());
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        for (SpringConfigurationMetadataHint hint : hints) {
+            consumer.onHint(hint);
+        }
+    }
+
+    private SpringConfigurationMetadataProperty readProperty() throws IOException {
+        SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "name":
+                    property.setName(pooledString());
+                    break;
+                case "type":
+                    property.setClassName(pooledString());
+                    break;
+                case "description":
+                    property.setDescription(reader.nextString());
+                    break;
+                case "sourceType":
+                    property.setSourceType(pooledString());
+                    break;
+                case "defaultValue":
+                    property.setDefaultValue(readValue());
+                    break;
+                case "deprecation":
+                    property.setDeprecation(readDeprecation());
+                    break;
+                case "isAppendColon":
+                    property.setIsAppendColon(reader.nextBoolean());
+                    break;
+                case "originalName":
+                    property.setOriginalName(pooledString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return property;
+    }
+
+    private SpringConfigurationMetadataDeprecation readDeprecation() throws IOException {
+        SpringConfigurationMetadataDeprecation deprecation = new SpringConfigurationMetadataDeprecation();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "level":
+                    deprecation.setLevel(toDeprecationLevel(reader.nextString()));
+                    break;
+                case "reason":
+                    deprecation.setReason(pooledString());
+                    break;
+                case "replacement":
+                    deprecation.setReplacement(pooledString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return deprecation;
+    }
+
+    private SpringConfigurationMetadataHint readHint() throws IOException {
+        SpringConfigurationMetadataHint hint = new SpringConfigurationMetadataHint();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "name":
+                    hint.setName(pooledString());
+                    break;
+                case "values":
+                    List<SpringConfigurationMetadataHintValue> values = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        values.add(readHintValue());
+                    }
+                    reader.endArray();
+                    hint.setValues(values.toArray(new SpringConfigurationMetadataHintValue[0]));
+                    break;
+                case "providers":
+                    List<SpringConfigurationMetadataValueProvider> providers = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        providers.add(readProvider());
+                    }
+                    reader.endArray();
+                    hint.setProviders(providers.toArray(new SpringConfigurationMetadataValueProvider[0]));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        hint.doOnGsonDeserialization();
+        return hint;
+    }
+
+    private SpringConfigurationMetadataHintValue readHintValue() throws IOException {
+        SpringConfigurationMetadataHintValue value = new SpringConfigurationMetadataHintValue();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "value":
+                    value.setNameAsObjOrArray(readValue());
+                    break;
+                case "description":
+                    value.setDescription(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    private SpringConfigurationMetadataValueProvider readProvider() throws IOException {
+        SpringConfigurationMetadataValueProvider provider = new SpringConfigurationMetadataValueProvider();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "name":
+                    provider.setType(SpringConfigurationMetadataValueProviderTypeDeserializer
+                            .toProviderType(reader.nextString()));
+                    break;
+                case "parameters":
+                    provider.setParameters(readProviderParams());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return provider;
+    }
+
+    private SpringConfigurationMetadataValueProviderParams readProviderParams() throws IOException {
+        SpringConfigurationMetadataValueProviderParams params = new SpringConfigurationMetadataValueProviderParams();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "target":
+                    params.setTarget(pooledString());
+                    break;
+                case "concrete":
+                    params.setConcrete(reader.nextBoolean());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return params;
+    }
+
+    /**
+     * Same representation Gson uses for values of type {@link Object}: numbers as double, arrays as lists & objects as
+     * maps
+     */
+    private Object readValue() throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readValue());
+                }
+                reader.endArray();
+                return list;
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    map.put(reader.nextName(), readValue());
+                }
+                reader.endObject();
+                return map;
+            case NUMBER:
+                return reader.nextDouble();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                return pooledString();
+        }
+    }
+
+    private String pooledString() throws IOException {
+        return stringPool.intern(reader.nextString());
+    }
+
+    private static SpringConfigurationMetadataDeprecationLevel toDeprecationLevel(String level) {
+        try {
+            return SpringConfigurationMetadataDeprecationLevel.valueOf(level);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
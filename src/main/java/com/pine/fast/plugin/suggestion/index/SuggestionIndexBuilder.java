@@ -0,0 +1,375 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.misc.StringPool;
+import com.pine.fast.plugin.suggestion.index.StreamingMetadataReader.MetadataConsumer;
+import com.pine.fast.plugin.suggestion.metadata.ArenaSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataNonPropertySuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataPropertySuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.SuggestionNodeArena;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadata;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 构建索引快照。构建过程中的 trie 及节点只对当前线程可见，{@link #build()} 之后不再修改，由调用方整体发布
+ * <p>
+ * Subclasses can build on top of existing tries, see {@link IncrementalSuggestionIndex}
+ *
+ * @author pine
+ */
+public class SuggestionIndexBuilder {
+
+    private static final Logger log = Logger.getInstance(SuggestionIndexBuilder.class);
+
+    /**
+     * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens,
+     * underscores, e.t.c in the keys themselves
+     */
+    private final Trie<String, MetadataSuggestionNode> rootSearchIndex;
+    private final Trie<String, MetadataSuggestionNode> simpleSearchIndex;
+
+    /**
+     * All properties referenced by the index, their lazily computed state is resolved before publishing
+     */
+    private final List<SpringConfigurationMetadataProperty> properties = new ArrayList<>();
+
+    private final StringPool stringPool = new StringPool();
+
+    public SuggestionIndexBuilder() {
+        this(new PatriciaTrie<>(), new PatriciaTrie<>());
+    }
+
+    /**
+     * @param rootSearchIndex   trie the hierarchical properties are added to
+     * @param simpleSearchIndex trie the simple properties are added to
+     */
+    protected SuggestionIndexBuilder(Trie<String, MetadataSuggestionNode> rootSearchIndex,
+                                     Trie<String, MetadataSuggestionNode> simpleSearchIndex) {
+        this.rootSearchIndex = rootSearchIndex;
+        this.simpleSearchIndex = simpleSearchIndex;
+    }
+
+    /**
+     * @param source metadata to build the snapshot from
+     * @return snapshot containing only the given source
+     */
+    public static SuggestionIndexSnapshot build(SuggestionMetadataSource source) throws IOException {
+        SuggestionIndexBuilder builder = new SuggestionIndexBuilder();
+        builder.addSource(source);
+        return builder.build();
+    }
+
+    /**
+     * Reads the entries of the document into memory, without building a json tree
+     */
+    public static SpringConfigurationMetadata readMetadata(InputStream inputStream) throws IOException {
+        return readMetadata(inputStream, new StringPool());
+    }
+
+    private static SpringConfigurationMetadata readMetadata(InputStream inputStream, StringPool stringPool)
+            throws IOException {
+        List<SpringConfigurationMetadataProperty> properties = new ArrayList<>();
+        List<SpringConfigurationMetadataProperty> simples = new ArrayList<>();
+        List<SpringConfigurationMetadataHint> hints = new ArrayList<>();
+        StreamingMetadataReader.read(inputStream, new MetadataConsumer() {
+            @Override
+            public void onProperty(SpringConfigurationMetadataProperty property) {
+                properties.add(property);
+            }
+
+            @Override
+            public void onSimple(SpringConfigurationMetadataProperty simple) {
+                simples.add(simple);
+            }
+
+            @Override
+            public void onHint(SpringConfigurationMetadataHint hint) {
+                hints.add(hint);
+            }
+        }, stringPool);
+        SpringConfigurationMetadata metadata = new SpringConfigurationMetadata();
+        metadata.setProperties(properties);
+        metadata.setSimples(simples);
+        metadata.setHints(hints);
+        return metadata;
+    }
+
+    /**
+     * Json entries are collected & sorted by name before they are added, just like the ones of {@link
+     * #addMetadata(SpringConfigurationMetadata, String)}: the first of several properties sharing a sanitised path
+     * decides the original name of the group nodes & which one wins a conflict, so document order would give another
+     * tree than the prebuilt index. Only the entries are held, they end up in the index anyway
+     */
+    public void addSource(SuggestionMetadataSource source) throws IOException {
+        if (source.isPrebuilt()) {
+            addPrebuiltIndex(PrebuiltSuggestionIndex.read(source.newInputStream()), source.getRef());
+        } else {
+            addMetadata(readMetadata(source.newInputStream(), stringPool), source.getRef());
+        }
+    }
+
+    public void addMetadata(SpringConfigurationMetadata springConfigurationMetadata, String containerArchiveOrFileRef) {
+        addPropertiesToIndex(springConfigurationMetadata, containerArchiveOrFileRef);
+        addHintsToIndex(springConfigurationMetadata, containerArchiveOrFileRef);
+        addSimplesToIndex(springConfigurationMetadata, containerArchiveOrFileRef);
+    }
+
+    /**
+     * Nodes of the prebuilt index are laid out in pre order, so every parent is created before its children & the
+     * children arrive already sorted. No path matching or sorting is needed here
+     */
+    public void addPrebuiltIndex(PrebuiltSuggestionIndex prebuiltIndex, String containerArchiveOrFileRef) {
+        MetadataSuggestionNode[] nodes = new MetadataSuggestionNode[prebuiltIndex.getNodeCount()];
+        int[] nodeParents = prebuiltIndex.getNodeParents();
+        for (int i = 0; i < nodes.length; i++) {
+            ProgressManager.checkCanceled();
+            MetadataNonPropertySuggestionNode parent =
+                    nodeParents[i] == SuggestionIndexFormat.NULL_REF ? null
+                            : MetadataNonPropertySuggestionNode.class.cast(nodes[nodeParents[i]]);
+            String originalName = prebuiltIndex.getNodeOriginalName(i);
+            SpringConfigurationMetadataProperty property = prebuiltIndex.getNodeProperty(i);
+            MetadataSuggestionNode node;
+            if (property != null) {
+                node = MetadataPropertySuggestionNode.newInstance(originalName, property, parent, containerArchiveOrFileRef);
+                properties.add(property);
+            } else {
+                node = MetadataNonPropertySuggestionNode.newInstance(originalName, parent, containerArchiveOrFileRef);
+            }
+            if (parent == null) {
+                rootSearchIndex.put(node.getName(), node);
+            } else {
+                parent.addChild(node);
+            }
+            nodes[i] = node;
+        }
+
+        addHintsToIndex(asList(prebuiltIndex.getHints()), containerArchiveOrFileRef);
+
+        for (SpringConfigurationMetadataProperty simple : prebuiltIndex.getSimples()) {
+            ProgressManager.checkCanceled();
+            addSimpleToIndex(simple, containerArchiveOrFileRef);
+        }
+    }
+
+    /**
+     * @return immutable snapshot, the builder must not be used afterwards
+     */
+    public SuggestionIndexSnapshot build() {
+        resolveProperties();
+        freezeModifiedRoots(rootSearchIndex);
+        freezeModifiedRoots(simpleSearchIndex);
+        return new SuggestionIndexSnapshot(rootSearchIndex, simpleSearchIndex);
+    }
+
+    /**
+     * Replaces all trees that are still modifiable with a single compact, read only {@link SuggestionNodeArena}.
+     * Roots that are already frozen are left untouched & keep sharing their arena
+     *
+     * @param index roots keyed by name
+     */
+    static void freezeModifiedRoots(Trie<String, MetadataSuggestionNode> index) {
+        List<String> modifiedNames = new ArrayList<>();
+        List<MetadataSuggestionNode> modifiedRoots = new ArrayList<>();
+        for (Map.Entry<String, MetadataSuggestionNode> entry : index.entrySet()) {
+            if (!(entry.getValue() instanceof ArenaSuggestionNode)) {
+                modifiedNames.add(entry.getKey());
+                modifiedRoots.add(entry.getValue());
+            }
+        }
+        if (modifiedRoots.isEmpty()) {
+            return;
+        }
+        List<MetadataSuggestionNode> frozenRoots = SuggestionNodeArena.freeze(modifiedRoots).getRoots();
+        for (int i = 0; i < modifiedNames.size(); i++) {
+            index.put(modifiedNames.get(i), frozenRoots.get(i));
+        }
+    }
+
+    /**
+     * Resolves the lazily computed state of all properties added so far, so that readers never race on it
+     */
+    protected void resolveProperties() {
+        for (SpringConfigurationMetadataProperty property : properties) {
+            property.resolveLazyState();
+        }
+        properties.clear();
+    }
+
+    /**
+     * Called before an existing node of the index gets modified
+     *
+     * @param index trie holding the node
+     * @param name  key of the node within the trie
+     * @return node that can be modified, null if there is no such node
+     */
+    protected MetadataSuggestionNode getForUpdate(Trie<String, MetadataSuggestionNode> index, String name) {
+        return index.get(name);
+    }
+
+    private void addHintsToIndex(SpringConfigurationMetadata springConfigurationMetadata, String containerPath) {
+        List<SpringConfigurationMetadataHint> hints = springConfigurationMetadata.getHints();
+        if (hints != null) {
+            hints.sort(comparing(SpringConfigurationMetadataHint::getName));
+            addHintsToIndex(hints, containerPath);
+        }
+    }
+
+    private void addHintsToIndex(List<SpringConfigurationMetadataHint> hints, String containerPath) {
+        for (SpringConfigurationMetadataHint hint : hints) {
+            addHintToIndex(hint, containerPath);
+        }
+    }
+
+    private void addHintToIndex(SpringConfigurationMetadataHint hint, String containerPath) {
+        String[] pathSegments = GenericUtil.toSanitizedPathSegments(hint.getExpectedPropertyName());
+        MetadataSuggestionNode closestMetadata =
+                findDeepestMetadataMatch(rootSearchIndex, pathSegments, true);
+        if (closestMetadata != null) {
+            if (!closestMetadata.isProperty()) {
+                log.warn(
+                        "Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata
+                                .getPathFromRoot(null)
+                                + " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to ("
+                                + closestMetadata.getBelongsTo().stream().collect(joining(","))
+                                + "), New hint belongs " + containerPath);
+            } else {
+                MetadataPropertySuggestionNode propertySuggestionNode =
+                        MetadataPropertySuggestionNode.class.cast(closestMetadata);
+                if (hint.representsValueOfMap()) {
+                    propertySuggestionNode.getProperty().setValueHint(hint);
+                } else {
+                    propertySuggestionNode.getProperty().setGenericOrKeyHint(hint);
+                }
+            }
+        }
+    }
+
+    private void addPropertiesToIndex(SpringConfigurationMetadata springConfigurationMetadata,
+                                      String containerArchiveOrFileRef) {
+        List<SpringConfigurationMetadataProperty> properties =
+                springConfigurationMetadata.getProperties();
+        if (properties == null) {
+            return;
+        }
+        properties.sort(comparing(SpringConfigurationMetadataProperty::getName));
+        for (SpringConfigurationMetadataProperty property : properties) {
+            ProgressManager.checkCanceled();
+            addPropertyToIndex(property, containerArchiveOrFileRef);
+        }
+    }
+
+    private void addPropertyToIndex(SpringConfigurationMetadataProperty property, String containerArchiveOrFileRef) {
+        String[] pathSegments = GenericUtil.toSanitizedPathSegments(property.getName());
+        String[] rawPathSegments = GenericUtil.toRawPathSegments(property.getName());
+        MetadataSuggestionNode closestMetadata =
+                findDeepestMetadataMatch(rootSearchIndex, pathSegments, false);
+
+        int startIndex;
+        if (closestMetadata == null) {
+            // 是否没有子节点，只有根节点存在
+            boolean onlyRootSegmentExists = pathSegments.length == 1;
+            if (onlyRootSegmentExists) {
+                closestMetadata = MetadataPropertySuggestionNode
+                        .newInstance(rawPathSegments[0], property, null, containerArchiveOrFileRef);
+                properties.add(property);
+            } else {
+                closestMetadata = MetadataNonPropertySuggestionNode
+                        .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
+            }
+            rootSearchIndex.put(pathSegments[0], closestMetadata);
+
+            // 因为我们已经处理了根级项目，所以让addChildren从pathSegments的索引1开始
+            startIndex = 1;
+        } else {
+            startIndex = closestMetadata.numOfHopesToRoot() + 1;
+        }
+
+        boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+
+        if (haveMoreSegmentsLeft) {
+            if (!closestMetadata.isProperty()) {
+                MetadataNonPropertySuggestionNode.class.cast(closestMetadata)
+                        .addChildren(property, rawPathSegments, startIndex, containerArchiveOrFileRef);
+                properties.add(property);
+            } else {
+                log.warn("Detected conflict between a new group & existing property for suggestion path "
+                        + closestMetadata.getPathFromRoot(null)
+                        + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
+                        .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
+                        + containerArchiveOrFileRef);
+            }
+        } else {
+            if (!closestMetadata.isProperty()) {
+                log.warn(
+                        "Detected conflict between a new metadata property & existing non property node for suggestion path "
+                                + closestMetadata.getPathFromRoot(null)
+                                + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
+                                .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
+                                + containerArchiveOrFileRef);
+            } else {
+                closestMetadata.addRefCascadeTillRoot(containerArchiveOrFileRef);
+                log.debug("Detected a duplicate metadata property for suggestion path " + closestMetadata
+                        .getPathFromRoot(null) + ". Ignoring property. Existing property belongs to ("
+                        + closestMetadata.getBelongsTo().stream().collect(joining(","))
+                        + "), New property belongs to " + containerArchiveOrFileRef);
+            }
+        }
+    }
+
+    private void addSimplesToIndex(SpringConfigurationMetadata springConfigurationMetadata,
+                                   String containerArchiveOrFileRef) {
+        List<SpringConfigurationMetadataProperty> simples =
+                springConfigurationMetadata.getSimples();
+        if (simples == null) {
+            return;
+        }
+        simples.sort(comparing(SpringConfigurationMetadataProperty::getName));
+        for (SpringConfigurationMetadataProperty simple : simples) {
+            ProgressManager.checkCanceled();
+            addSimpleToIndex(simple, containerArchiveOrFileRef);
+        }
+    }
+
+    private void addSimpleToIndex(SpringConfigurationMetadataProperty simple, String containerArchiveOrFileRef) {
+        String originalName = StringUtils.isEmpty(simple.getOriginalName()) ? simple.getName() : simple.getOriginalName();
+        MetadataSuggestionNode existing = getForUpdate(simpleSearchIndex, simple.getName());
+        if (existing != null) {
+            existing.addRefCascadeTillRoot(containerArchiveOrFileRef);
+            log.debug("Detected a duplicate simple property " + simple.getName()
+                    + ". Ignoring property. Existing property belongs to (" + existing.getBelongsTo().stream()
+                    .collect(joining(",")) + "), New property belongs to " + containerArchiveOrFileRef);
+            return;
+        }
+        MetadataSuggestionNode closestMetadata = MetadataPropertySuggestionNode
+                .newInstance(simple.getName(), originalName, simple, null, containerArchiveOrFileRef);
+        simpleSearchIndex.put(simple.getName(), closestMetadata);
+        properties.add(simple);
+    }
+
+    private MetadataSuggestionNode findDeepestMetadataMatch(Trie<String, MetadataSuggestionNode> roots,
+                                                            String[] pathSegments, boolean matchAllSegments) {
+        MetadataSuggestionNode closestMatchedRoot = getForUpdate(roots, pathSegments[0]);
+        if (closestMatchedRoot != null) {
+            closestMatchedRoot =
+                    closestMatchedRoot.findDeepestMetadataNode(pathSegments, 1, matchAllSegments);
+        }
+        return closestMatchedRoot;
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 应用级索引缓存，所有项目共享同一份只读快照，按元数据内容的 hash 区分。
+ * <p>
+ * Loading is single flight: the first caller for a given hash builds the snapshot, concurrent callers for the same
+ * hash wait for that build instead of parsing the same metadata again. Memory scales with the number of distinct
+ * metadata sets, not with the number of open projects
+ *
+ * @author pine
+ */
+public class SuggestionIndexCache {
+
+    private static final Logger log = Logger.getInstance(SuggestionIndexCache.class);
+
+    /**
+     * Upper bound on distinct snapshots retained, older ones are rebuilt on demand if ever requested again
+     */
+    private static final int MAX_CACHED_SNAPSHOTS = 4;
+
+    private final ConcurrentMap<String, CompletableFuture<SuggestionIndexSnapshot>> contentHashToSnapshot =
+            new ConcurrentHashMap<>();
+
+    public static SuggestionIndexCache getInstance() {
+        return ServiceManager.getService(SuggestionIndexCache.class);
+    }
+
+    /**
+     * @return shared snapshot of the metadata bundled with the plugin
+     */
+    public SuggestionIndexSnapshot getBundledSnapshot() throws IOException {
+        return getSnapshot(SuggestionMetadataSource.bundled());
+    }
+
+    /**
+     * Returns the cached snapshot for the source content, building it if this is the first request for the content.
+     * Must be called from a background thread, waiting for a build in progress honours cancellation
+     *
+     * @param source metadata source
+     * @return shared, read only snapshot
+     */
+    public SuggestionIndexSnapshot getSnapshot(SuggestionMetadataSource source) throws IOException {
+        String contentHash = source.getContentHash();
+        while (true) {
+            CompletableFuture<SuggestionIndexSnapshot> newFuture = new CompletableFuture<>();
+            CompletableFuture<SuggestionIndexSnapshot> existingFuture =
+                    contentHashToSnapshot.putIfAbsent(contentHash, newFuture);
+            if (existingFuture == null) {
+                return buildAndPublish(source, contentHash, newFuture);
+            }
+            SuggestionIndexSnapshot snapshot = await(existingFuture);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            // the build we were waiting for failed/got cancelled & has been removed, lets try to become the builder
+        }
+    }
+
+    private SuggestionIndexSnapshot buildAndPublish(SuggestionMetadataSource source, String contentHash,
+                                                    CompletableFuture<SuggestionIndexSnapshot> future) throws IOException {
+        try {
+            SuggestionIndexSnapshot snapshot = SuggestionIndexBuilder.build(source);
+            future.complete(snapshot);
+            evictIfNeeded(contentHash);
+            return snapshot;
+        } catch (IOException | RuntimeException | Error e) {
+            contentHashToSnapshot.remove(contentHash, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return snapshot, or null if the build failed
+     */
+    private SuggestionIndexSnapshot await(CompletableFuture<SuggestionIndexSnapshot> future) {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return future.get(20, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // keep waiting, but give the indicator a chance to cancel us
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof ProcessCanceledException)) {
+                    log.warn("Shared index build failed", e.getCause());
+                }
+                return null;
+            }
+        }
+    }
+
+    private void evictIfNeeded(String retainedContentHash) {
+        while (contentHashToSnapshot.size() > MAX_CACHED_SNAPSHOTS) {
+            String oldestContentHash = null;
+            long oldestVersion = Long.MAX_VALUE;
+            for (Map.Entry<String, CompletableFuture<SuggestionIndexSnapshot>> entry : contentHashToSnapshot
+                    .entrySet()) {
+                CompletableFuture<SuggestionIndexSnapshot> future = entry.getValue();
+                if (!entry.getKey().equals(retainedContentHash) && future.isDone()
+                        && !future.isCompletedExceptionally() && future.join().getVersion() < oldestVersion) {
+                    oldestVersion = future.join().getVersion();
+                    oldestContentHash = entry.getKey();
+                }
+            }
+            if (oldestContentHash == null) {
+                return;
+            }
+            contentHashToSnapshot.remove(oldestContentHash);
+        }
+    }
+
+}
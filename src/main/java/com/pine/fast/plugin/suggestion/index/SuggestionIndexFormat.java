@@ -0,0 +1,47 @@
+package com.pine.fast.plugin.suggestion.index;
+
+/**
+ * 预编译索引 suggestion.idx 的二进制格式，由 build.gradle 中的 compileSuggestionIndex 任务生成，两边必须保持一致
+ * <p>
+ * 所有数值均为大端序，字符串均为 {@link java.io.DataOutput#writeUTF(String)} 格式，字符串引用为字符串表下标，-1 表示 null
+ * <pre>
+ * int     magic                 FYIX
+ * int     version
+ * int     stringCount           string[stringCount]
+ * int     propertyCount         property[propertyCount]   已按 name 排序
+ * int     simpleCount           property[simpleCount]     已按 name 排序
+ * int     hintCount             hint[hintCount]           已按 name 排序
+ * int     nodeCount             node[nodeCount]           先序排列，兄弟节点已按 sanitised name 排序
+ *
+ * property: int name, int type, int description, int defaultValue, int sourceType, int originalName,
+ *           byte appendColon (-1 null, 0 false, 1 true),
+ *           byte deprecation (-1 none, 0 warning, 1 error, 2 level unknown), int reason, int replacement
+ * hint:     int name, int valueCount, value[valueCount], int providerCount, int provider[providerCount]
+ * value:    int elementCount (-1 表示单值), int value 或 int element[elementCount], int description
+ * node:     int parent, int originalName, int property (properties 下标, -1 表示中间节点), int firstChild, int nextSibling
+ * </pre>
+ *
+ * @author pine
+ */
+public final class SuggestionIndexFormat {
+
+    /**
+     * 类路径下的索引资源
+     */
+    public static final String RESOURCE = "/suggestion.idx";
+
+    public static final int MAGIC = 0x46594958;
+    public static final int VERSION = 2;
+
+    public static final int NULL_REF = -1;
+    public static final int SINGLE_VALUE = -1;
+
+    public static final byte DEPRECATION_NONE = -1;
+    public static final byte DEPRECATION_WARNING = 0;
+    public static final byte DEPRECATION_ERROR = 1;
+    public static final byte DEPRECATION_UNKNOWN_LEVEL = 2;
+
+    private SuggestionIndexFormat() {
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import com.pine.fast.plugin.suggestion.metadata.ArenaSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.MetadataSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.SegmentIndex;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.collections4.Trie;
+
+/**
+ * Immutable view of the search index. Snapshots are never modified after construction, a reload builds a new snapshot
+ * & publishes it with a single reference swap. Readers grab the current snapshot once per request & need no locking,
+ * completions in flight simply keep working against the snapshot they started with. All nodes of a snapshot are backed
+ * by read only {@link com.pine.fast.plugin.suggestion.metadata.SuggestionNodeArena}s
+ *
+ * @author pine
+ */
+@Getter
+public final class SuggestionIndexSnapshot {
+
+    private static final AtomicLong VERSION_SEQUENCE = new AtomicLong();
+
+    /**
+     * Unique per snapshot, increases with every publish
+     */
+    private final long version;
+
+    /**
+     * Contains search over the property names of the simples, ids are top level ordinals
+     */
+    private final TrigramIndex simpleContainsIndex;
+
+    /**
+     * Camel hump initials of the property names of the simples, ids are top level ordinals
+     */
+    private final AbbreviationIndex simpleAbbreviationIndex;
+
+    /**
+     * Path segments of the nodes below the roots
+     */
+    private final SegmentIndex segmentIndex;
+
+    /**
+     * 统一的顶层索引：层级属性的根节点与简单属性放在同一个按名字排序的表中，由 {@link #simples} 区分类型。这是顶层唯一的结构，
+     * 根节点 keyed by sanitised root segment，简单属性 keyed by name
+     * <p>
+     * The position of an entry is its dense ordinal, which lets the entries to skip be represented as a bitset, a
+     * prefix be looked up as a range & the text indexes of the simples identify their entries by ordinal. A root & a
+     * simple may share a name, the root then comes first
+     */
+    @Getter(AccessLevel.NONE)
+    private final String[] topLevelNames;
+    @Getter(AccessLevel.NONE)
+    private final MetadataSuggestionNode[] topLevelNodes;
+    /**
+     * Kind flag of the top level entries, set for simples & clear for roots
+     */
+    @Getter(AccessLevel.NONE)
+    private final BitSet simples;
+
+    /**
+     * @param rootSearchIndex   hierarchical properties of the builder, only read while merging
+     * @param simpleSearchIndex simples of the builder, only read while merging
+     */
+    SuggestionIndexSnapshot(Trie<String, MetadataSuggestionNode> rootSearchIndex,
+                            Trie<String, MetadataSuggestionNode> simpleSearchIndex) {
+        this.version = VERSION_SEQUENCE.incrementAndGet();
+        this.segmentIndex = SegmentIndex.build(rootSearchIndex.values());
+
+        // both tries iterate in key order, merging them keeps the table sorted
+        int size = rootSearchIndex.size() + simpleSearchIndex.size();
+        this.topLevelNames = new String[size];
+        this.topLevelNodes = new MetadataSuggestionNode[size];
+        this.simples = new BitSet(size);
+        Iterator<Map.Entry<String, MetadataSuggestionNode>> rootIterator = rootSearchIndex.entrySet().iterator();
+        Iterator<Map.Entry<String, MetadataSuggestionNode>> simpleIterator = simpleSearchIndex.entrySet().iterator();
+        Map.Entry<String, MetadataSuggestionNode> root = next(rootIterator);
+        Map.Entry<String, MetadataSuggestionNode> simple = next(simpleIterator);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            boolean takeSimple = root == null || (simple != null && simple.getKey().compareTo(root.getKey()) < 0);
+            Map.Entry<String, MetadataSuggestionNode> entry = takeSimple ? simple : root;
+            topLevelNames[ordinal] = entry.getKey();
+            topLevelNodes[ordinal] = entry.getValue();
+            if (takeSimple) {
+                simples.set(ordinal);
+                simple = next(simpleIterator);
+            } else {
+                root = next(rootIterator);
+            }
+        }
+        this.simpleContainsIndex = TrigramIndex.build(size, this::simplePropertyName);
+        this.simpleAbbreviationIndex = AbbreviationIndex.build(size, this::simplePropertyName);
+    }
+
+    public int getTopLevelCount() {
+        return topLevelNodes.length;
+    }
+
+    public MetadataSuggestionNode getTopLevel(int ordinal) {
+        return topLevelNodes[ordinal];
+    }
+
+    public String getTopLevelName(int ordinal) {
+        return topLevelNames[ordinal];
+    }
+
+    /**
+     * @return root of the hierarchical properties with the given sanitised name
+     */
+    @Nullable
+    public MetadataSuggestionNode getRoot(String name) {
+        int ordinal = rootOrdinal(name);
+        return ordinal != -1 ? topLevelNodes[ordinal] : null;
+    }
+
+    /**
+     * @return simple with the given name
+     */
+    @Nullable
+    public MetadataSuggestionNode getSimple(String name) {
+        for (int ordinal = rangeStart(name); ordinal < topLevelNames.length && topLevelNames[ordinal].equals(name);
+             ordinal++) {
+            if (simples.get(ordinal)) {
+                return topLevelNodes[ordinal];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the top level entry is a simple, false if it is the root of hierarchical properties
+     */
+    public boolean isSimple(int ordinal) {
+        return simples.get(ordinal);
+    }
+
+    /**
+     * @return true if any of the top level entries {@code [from, to)} is a root
+     */
+    public boolean hasRoot(int from, int to) {
+        return simples.nextClearBit(from) < to;
+    }
+
+    /**
+     * @return ordinal of the root with the given sanitised name, -1 if there is none
+     */
+    public int rootOrdinal(String name) {
+        for (int ordinal = rangeStart(name); ordinal < topLevelNames.length && topLevelNames[ordinal].equals(name);
+             ordinal++) {
+            if (!simples.get(ordinal)) {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return ordinal of the first top level entry whose name starts with the prefix, entries with the prefix end at
+     * {@link #rangeEnd(int, String)}
+     */
+    public int rangeStart(String prefix) {
+        // lower bound, names are not unique across both kinds
+        int low = 0;
+        int high = topLevelNames.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (topLevelNames[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int rangeEnd(int rangeStart, String prefix) {
+        int index = rangeStart;
+        while (index < topLevelNames.length && topLevelNames[index].startsWith(prefix)) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Sets the ordinal of every root whose name starts with one of the given names. Simples are never marked
+     *
+     * @param excluded cleared by the caller
+     * @return true if any bit was set
+     */
+    public boolean markRootsStartingWith(Collection<String> names, BitSet excluded) {
+        boolean marked = false;
+        for (String name : names) {
+            int start = rangeStart(name);
+            int end = rangeEnd(start, name);
+            for (int ordinal = simples.nextClearBit(start); ordinal < end; ordinal = simples.nextClearBit(ordinal + 1)) {
+                excluded.set(ordinal);
+                marked = true;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * @return top level nodes of both kinds, in ordinal order
+     */
+    public List<MetadataSuggestionNode> getTopLevelNodes() {
+        return Collections.unmodifiableList(Arrays.asList(topLevelNodes));
+    }
+
+    @Nullable
+    private String simplePropertyName(int ordinal) {
+        return simples.get(ordinal) ? propertyName(topLevelNodes[ordinal]) : null;
+    }
+
+    @Nullable
+    private static <T> T next(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Nullable
+    private static String propertyName(MetadataSuggestionNode node) {
+        SpringConfigurationMetadataProperty property = ArenaSuggestionNode.class.cast(node).getProperty();
+        return property != null ? property.getName() : null;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import lombok.Getter;
+
+/**
+ * Raw content of a metadata source (prebuilt index or json), loaded once so that it can be both hashed & parsed
+ *
+ * @author pine
+ */
+@Getter
+public class SuggestionMetadataSource {
+
+    /**
+     * Reference recorded in `belongsTo` of every node contributed by this source
+     */
+    private final String ref;
+    private final byte[] content;
+    /**
+     * true if the content is in {@link SuggestionIndexFormat}, false if json
+     */
+    private final boolean prebuilt;
+
+    private String contentHash;
+
+    public SuggestionMetadataSource(String ref, byte[] content, boolean prebuilt) {
+        this.ref = ref;
+        this.content = content;
+        this.prebuilt = prebuilt;
+    }
+
+    /**
+     * 优先使用构建时预编译的二进制索引，缺失时（如直接从源码运行）再退回到 json
+     */
+    public static SuggestionMetadataSource bundled() throws IOException {
+        InputStream inputStream = SuggestionMetadataSource.class.getResourceAsStream(SuggestionIndexFormat.RESOURCE);
+        boolean prebuilt = inputStream != null;
+        if (!prebuilt) {
+            inputStream = SuggestionMetadataSource.class.getResourceAsStream("/suggestion.json");
+            if (inputStream == null) {
+                throw new IOException("no bundled suggestion metadata found");
+            }
+        }
+        try (InputStream in = inputStream) {
+            return new SuggestionMetadataSource("test", FileUtil.loadBytes(in), prebuilt);
+        }
+    }
+
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    /**
+     * @return hex encoded SHA-1 of the content, identifies the metadata irrespective of where it was loaded from
+     */
+    public String getContentHash() {
+        if (contentHash == null) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+                StringBuilder builder = new StringBuilder(digest.length * 2);
+                for (byte b : digest) {
+                    builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                contentHash = builder.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return contentHash;
+    }
+
+}
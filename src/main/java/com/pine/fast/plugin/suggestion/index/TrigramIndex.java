@@ -0,0 +1,126 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongObjectHashMap;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * 三元组（trigram）倒排索引，用于 contains 查询：只需对查询串的各个 trigram 的 posting list 求交集，而不必扫描所有条目
+ * <p>
+ * Candidates returned are a superset of the real matches (all trigrams present, but not necessarily next to each
+ * other), callers still have to verify them. Queries shorter than a trigram can not be answered from the index & fall
+ * back to all entries. Entries are identified by their id, the position they were given at build time. Immutable once
+ * built
+ *
+ * @author pine
+ */
+public final class TrigramIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_POSTINGS = new int[0];
+
+    /**
+     * Number of entries indexed, the ones left out are not counted
+     */
+    private final int size;
+    /**
+     * Packed trigram -> ascending ids of the entries containing it
+     */
+    private final TLongObjectHashMap<int[]> postings;
+
+    private TrigramIndex(int size, TLongObjectHashMap<int[]> postings) {
+        this.size = size;
+        this.postings = postings;
+    }
+
+    /**
+     * @param size    number of entries, ids go from 0 to size - 1
+     * @param keyText text of the entry with the given id the queries are matched against, null to leave the entry out
+     */
+    public static TrigramIndex build(int size, IntFunction<String> keyText) {
+        TLongObjectHashMap<TIntArrayList> builder = new TLongObjectHashMap<>();
+        int indexedCount = 0;
+        for (int id = 0; id < size; id++) {
+            String text = keyText.apply(id);
+            if (text == null) {
+                continue;
+            }
+            indexedCount++;
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                long gram = pack(text, i);
+                TIntArrayList ids = builder.get(gram);
+                if (ids == null) {
+                    ids = new TIntArrayList(4);
+                    builder.put(gram, ids);
+                }
+                // ids are visited in ascending order, so only the last one can be a duplicate
+                if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                    ids.add(id);
+                }
+            }
+        }
+        TLongObjectHashMap<int[]> postings = new TLongObjectHashMap<>(builder.size());
+        builder.forEachEntry((gram, ids) -> {
+            postings.put(gram, ids.toNativeArray());
+            return true;
+        });
+        return new TrigramIndex(indexedCount, postings);
+    }
+
+    /**
+     * @param query text to search for
+     * @return ascending ids of the entries that may contain the query, null if the query is too short for the index &
+     * every entry is a candidate. Must not be modified
+     */
+    @Nullable
+    public int[] findCandidates(@Nullable String query) {
+        if (query == null || query.length() < GRAM_LENGTH) {
+            return null;
+        }
+        int[] candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            int[] ids = postings.get(pack(query, i));
+            if (ids == null) {
+                return NO_POSTINGS;
+            }
+            candidates = candidates == null ? ids : intersect(candidates, ids);
+            if (candidates.length == 0) {
+                return NO_POSTINGS;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return number of entries indexed, which is less than the size it was built with if some were left out
+     */
+    public int size() {
+        return size;
+    }
+
+    private static long pack(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return count == 0 ? NO_POSTINGS : Arrays.copyOf(result, count);
+    }
+
+}
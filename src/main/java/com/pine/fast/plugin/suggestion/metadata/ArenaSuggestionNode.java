@@ -0,0 +1,455 @@
+package com.pine.fast.plugin.suggestion.metadata;
+
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.suggestion.MatchPath;
+import com.pine.fast.plugin.suggestion.Suggestion;
+import com.pine.fast.plugin.suggestion.SuggestionCollector;
+import com.pine.fast.plugin.suggestion.SuggestionNode;
+import com.pine.fast.plugin.suggestion.completion.FileType;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataGroup;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Read only view of a single node of a {@link SuggestionNodeArena}. Behaves exactly like {@link
+ * MetadataPropertySuggestionNode} or {@link MetadataNonPropertySuggestionNode} depending on the kind of the node, but
+ * holds nothing except the arena & the node id, so instances are cheap to create during a search
+ *
+ * @author pine
+ */
+public final class ArenaSuggestionNode extends MetadataSuggestionNode {
+
+    private static final ThreadLocal<BitSet> EXCLUDED_CHILDREN = ThreadLocal.withInitial(BitSet::new);
+
+    private final SuggestionNodeArena arena;
+    private final int id;
+
+    ArenaSuggestionNode(SuggestionNodeArena arena, int id) {
+        this.arena = arena;
+        this.id = id;
+    }
+
+    SuggestionNodeArena arena() {
+        return arena;
+    }
+
+    int id() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return arena.name(id);
+    }
+
+    @NotNull
+    @Override
+    public String getOriginalName() {
+        return arena.originalName(id);
+    }
+
+    @Nullable
+    @Override
+    protected MetadataSuggestionNode getParent() {
+        int parent = arena.parent(id);
+        return parent == SuggestionNodeArena.NO_NODE ? null : arena.node(parent);
+    }
+
+    /**
+     * @return property of a property node, null otherwise
+     */
+    @Nullable
+    public SpringConfigurationMetadataProperty getProperty() {
+        return arena.property(id);
+    }
+
+    @Override
+    public Set<String> getBelongsTo() {
+        return arena.belongsTo(id);
+    }
+
+    @Override
+    public void addRefCascadeTillRoot(String containerPath) {
+        throw new UnsupportedOperationException("Published nodes are read only, modify a copy instead");
+    }
+
+    @Override
+    public boolean removeRefCascadeDown(String containerPath) {
+        throw new UnsupportedOperationException("Published nodes are read only, modify a copy instead");
+    }
+
+    @Override
+    public MetadataSuggestionNode copy(@Nullable MetadataNonPropertySuggestionNode parent) {
+        return arena.thaw(id, parent);
+    }
+
+    @Override
+    protected boolean isRoot() {
+        return arena.parent(id) == SuggestionNodeArena.NO_NODE;
+    }
+
+    @Override
+    public boolean isGroup() {
+        return arena.group(id) != null;
+    }
+
+    @Override
+    public boolean isProperty() {
+        return arena.property(id) != null;
+    }
+
+    @Override
+    public boolean isMetadataNonProperty() {
+        return !isProperty();
+    }
+
+    @Override
+    public boolean isLeaf(Module module) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        return property != null && property.isLeaf(module);
+    }
+
+    @Override
+    protected boolean hasOnlyOneChild(Module module) {
+        // property nodes always claim to have multiple children, see MetadataPropertySuggestionNode
+        return !isProperty() && arena.childCount(id) == 1;
+    }
+
+    @Override
+    public MetadataSuggestionNode findDeepestMetadataNode(String[] pathSegments, int pathSegmentStartIndex,
+                                                          boolean matchAllSegments) {
+        MetadataSuggestionNode deepestMatch = null;
+        if (!matchAllSegments) {
+            deepestMatch = this;
+        }
+        boolean haveMoreSegments = pathSegmentStartIndex < pathSegments.length;
+        if (haveMoreSegments) {
+            boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
+            String pathSegment = pathSegments[pathSegmentStartIndex];
+            if (hasChildren()) {
+                int child = arena.findChild(id, pathSegment);
+                if (child != SuggestionNodeArena.NO_NODE) {
+                    MetadataSuggestionNode childNode = arena.node(child);
+                    if (lastSegment) {
+                        deepestMatch = childNode;
+                    } else {
+                        deepestMatch = childNode
+                                .findDeepestMetadataNode(pathSegments, pathSegmentStartIndex + 1, matchAllSegments);
+                    }
+                    if (matchAllSegments && deepestMatch == null) {
+                        deepestMatch = this;
+                    }
+                }
+            } else if (lastSegment && getName().equals(pathSegment)) {
+                deepestMatch = this;
+            }
+        }
+        return deepestMatch;
+    }
+
+    @Nullable
+    @Override
+    public List<SuggestionNode> findDeepestSuggestionNode(Module module, List<SuggestionNode> matchesRootTillMe,
+                                                          String[] pathSegments, int pathSegmentStartIndex) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        boolean haveMoreSegments = pathSegmentStartIndex < pathSegments.length;
+        if (property != null) {
+            if (haveMoreSegments && !property.isLeaf(module)) {
+                return property.findChildDeepestKeyMatch(module, matchesRootTillMe, pathSegments,
+                        pathSegmentStartIndex);
+            }
+            return null;
+        }
+
+        List<SuggestionNode> deepestMatch = null;
+        if (haveMoreSegments) {
+            String currentPathSegment = pathSegments[pathSegmentStartIndex];
+            boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
+            if (hasChildren()) {
+                int child = arena.findChild(id, currentPathSegment);
+                if (child != SuggestionNodeArena.NO_NODE) {
+                    MetadataSuggestionNode childNode = arena.node(child);
+                    matchesRootTillMe.add(childNode);
+                    if (lastSegment) {
+                        deepestMatch = matchesRootTillMe;
+                    } else {
+                        deepestMatch = childNode.findDeepestSuggestionNode(module, matchesRootTillMe, pathSegments,
+                                pathSegmentStartIndex + 1);
+                    }
+                }
+            } else if (lastSegment && getName().equals(currentPathSegment)) {
+                deepestMatch = matchesRootTillMe;
+            }
+        } else {
+            deepestMatch = matchesRootTillMe;
+        }
+        return deepestMatch;
+    }
+
+    @Nullable
+    @Override
+    public SortedSet<Suggestion> findKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+                                                                  List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+                                                                  int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude) {
+        SuggestionCollector collector = SuggestionCollector.unbounded();
+        collectKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe, numOfAncestors, querySegmentPrefixes,
+                querySegmentPrefixStartIndex, siblingsToExclude, collector);
+        return collector.getSuggestionsOrNull();
+    }
+
+    @Override
+    public void collectKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+                                                    List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+                                                    int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude,
+                                                    SuggestionCollector collector) {
+        if (collector.isFull()) {
+            return;
+        }
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        boolean lookingForConcreteNode = querySegmentPrefixStartIndex >= querySegmentPrefixes.length;
+        if (property != null) {
+            if (!property.isDeprecatedError()) {
+                if (lookingForConcreteNode) {
+                    collectKeySuggestion(module, fileType, matchesRootTillMe, numOfAncestors, false, collector);
+                } else if (!property.isLeaf(module)) {
+                    collector.addAll(property.findChildKeySuggestionsForQueryPrefix(module, fileType,
+                            matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
+                            siblingsToExclude));
+                }
+            }
+            return;
+        }
+
+        int firstChild = arena.firstChild(id);
+        int childrenEnd = firstChild + arena.childCount(id);
+        if (lookingForConcreteNode) {
+            SpringConfigurationMetadataGroup group = arena.group(id);
+            if (group != null && !hasOnlyOneChild(module)) {
+                // either there are no children/multiple children are present. Lets return suggestions
+                collect(matchesRootTillMe, numOfAncestors, SuggestionKind.GROUP, fileType, false,
+                        () -> group.newSuggestion(fileType, matchesRootTillMe, numOfAncestors), collector);
+                return;
+            }
+            // intermediate node or a group with a single child, lets get all next level groups & properties
+            addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe, numOfAncestors,
+                    querySegmentPrefixes, querySegmentPrefixStartIndex, firstChild, childrenEnd, null, collector);
+        } else if (hasChildren()) {
+            String querySegmentPrefix = querySegmentPrefixes[querySegmentPrefixStartIndex];
+            int matchStart = arena.prefixRangeStart(id, querySegmentPrefix);
+            int matchEnd = arena.prefixRangeEnd(id, matchStart, querySegmentPrefix);
+            BitSet excludedChildren = excludedChildren(siblingsToExclude);
+            if (hasChildOutsideExclusions(firstChild, matchStart, matchEnd, excludedChildren)) {
+                int offeredCount = collector.getOfferedCount();
+                addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe, numOfAncestors,
+                        querySegmentPrefixes, querySegmentPrefixStartIndex + 1, matchStart, matchEnd,
+                        excludedChildren, collector);
+                // If the leaf is deprecated (management.context-path), it will shadow deeper match (management.server.servlet.context-path)
+                if (collector.getOfferedCount() != offeredCount) {
+                    return;
+                }
+            }
+            if (collector.isDegraded()) {
+                return;
+            }
+            // lets search in the next level
+            addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe, numOfAncestors,
+                    querySegmentPrefixes, querySegmentPrefixStartIndex, firstChild, childrenEnd, excludedChildren,
+                    collector);
+        }
+    }
+
+    @Override
+    public SortedSet<Suggestion> findKeySuggestionsForContains(Module module, FileType fileType,
+                                                              List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String querySegmentPrefixes) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        if (property != null && !property.isDeprecatedError() && property.getName().contains(querySegmentPrefixes)) {
+            return GenericUtil.newSingleElementSortedSet(
+                    keySuggestion(module, fileType, matchesRootTillMe, numOfAncestors, true));
+        }
+        return null;
+    }
+
+    /**
+     * @param rawNames true to display the names as defined (used for simples), original names otherwise
+     * @return key suggestion of this property node, shared across searches of the same snapshot if the path is the one
+     * from root
+     */
+    public Suggestion keySuggestion(Module module, FileType fileType, List<SuggestionNode> matchesRootTillMe,
+                                    int numOfAncestors, boolean rawNames) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        if (property == null) {
+            throw new IllegalAccessError("Should never be called");
+        }
+        if (rawNames) {
+            return cachedSuggestion(matchesRootTillMe, numOfAncestors, SuggestionKind.PROPERTY_RAW_NAMES, fileType,
+                    () -> property.buildKeySuggestion2(module, fileType, matchesRootTillMe, numOfAncestors));
+        }
+        return cachedSuggestion(matchesRootTillMe, numOfAncestors, SuggestionKind.PROPERTY, fileType,
+                () -> property.buildKeySuggestion(module, fileType, matchesRootTillMe, numOfAncestors));
+    }
+
+    /**
+     * Same as {@link #keySuggestion(Module, FileType, List, int, boolean)}, but collects the suggestion
+     */
+    public void collectKeySuggestion(Module module, FileType fileType, List<SuggestionNode> matchesRootTillMe,
+                                     int numOfAncestors, boolean rawNames, SuggestionCollector collector) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        if (property == null) {
+            throw new IllegalAccessError("Should never be called");
+        }
+        if (rawNames) {
+            collect(matchesRootTillMe, numOfAncestors, SuggestionKind.PROPERTY_RAW_NAMES, fileType, true,
+                    () -> property.buildKeySuggestion2(module, fileType, matchesRootTillMe, numOfAncestors), collector);
+        } else {
+            collect(matchesRootTillMe, numOfAncestors, SuggestionKind.PROPERTY, fileType, false,
+                    () -> property.buildKeySuggestion(module, fileType, matchesRootTillMe, numOfAncestors), collector);
+        }
+    }
+
+    /**
+     * A memoised suggestion is checked against the filter of the collector by its own text. Any other is checked by
+     * the text of its path, so that a rejected one is never built
+     */
+    private void collect(List<SuggestionNode> matchesRootTillMe, int numOfAncestors, SuggestionKind kind,
+                         FileType fileType, boolean rawNames, Supplier<Suggestion> builder,
+                         SuggestionCollector collector) {
+        if (isPathFromRoot(matchesRootTillMe)) {
+            collector.add(arena.cachedSuggestion(id, numOfAncestors, variant(kind, fileType), builder));
+        } else if (!collector.isFiltered() || !collector.rejects(rawNames
+                ? GenericUtil.dotDelimitedNames(matchesRootTillMe, numOfAncestors)
+                : GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))) {
+            collector.addMatched(builder.get());
+        }
+    }
+
+    private Suggestion cachedSuggestion(List<SuggestionNode> matchesRootTillMe, int numOfAncestors,
+                                        SuggestionKind kind, FileType fileType, Supplier<Suggestion> builder) {
+        if (!isPathFromRoot(matchesRootTillMe)) {
+            return builder.get();
+        }
+        return arena.cachedSuggestion(id, numOfAncestors, variant(kind, fileType), builder);
+    }
+
+    /**
+     * The suggestion keeps the path it was built with, so only the canonical path from root can be shared
+     */
+    private boolean isPathFromRoot(List<SuggestionNode> matchesRootTillMe) {
+        return matchesRootTillMe.size() == arena.depth(id) + 1
+                && equals(matchesRootTillMe.get(matchesRootTillMe.size() - 1));
+    }
+
+    private static int variant(SuggestionKind kind, FileType fileType) {
+        return kind.ordinal() * 16 + fileType.ordinal();
+    }
+
+    @Nullable
+    @Override
+    public SortedSet<Suggestion> findValueSuggestionsForPrefix(Module module, FileType fileType,
+                                                               List<SuggestionNode> matchesRootTillMe, String prefix,
+                                                               @Nullable Set<String> siblingsToExclude) {
+        SpringConfigurationMetadataProperty property = arena.property(id);
+        if (property == null) {
+            throw new IllegalAccessError("Should never be called");
+        }
+        return property.findSuggestionsForValues(module, fileType, matchesRootTillMe, prefix, siblingsToExclude);
+    }
+
+    @Override
+    public String toTree() {
+        if (isProperty()) {
+            return getOriginalName() + (isRoot() ? "(root + property)" : "(property)");
+        }
+        StringBuilder builder = new StringBuilder(getOriginalName())
+                .append(isRoot() ? "(root + group)" : (isGroup() ? "(group)" : "(intermediate)"))
+                .append("\n");
+        int end = arena.firstChild(id) + arena.childCount(id);
+        for (int child = arena.firstChild(id); child < end; child++) {
+            builder.append(arena.node(child).toTree().trim().replaceAll("^", "  ").replaceAll("\n", "\n  "))
+                    .append("\n");
+        }
+        return builder.toString();
+    }
+
+    private boolean hasChildren() {
+        return arena.childCount(id) != 0;
+    }
+
+    /**
+     * @return ordinals of the children named in {@code siblingsToExclude}, null if none of them is a child. The bitset is
+     * reused by every search of the current thread; this is safe as only the start node of a search gets siblings to
+     * exclude, the nodes below it are always searched without
+     */
+    @Nullable
+    private BitSet excludedChildren(@Nullable Set<String> siblingsToExclude) {
+        if (siblingsToExclude == null || siblingsToExclude.isEmpty()) {
+            return null;
+        }
+        BitSet excludedChildren = EXCLUDED_CHILDREN.get();
+        excludedChildren.clear();
+        return arena.markChildren(id, siblingsToExclude, excludedChildren) ? excludedChildren : null;
+    }
+
+    private boolean hasChildOutsideExclusions(int firstChild, int from, int to, @Nullable BitSet excludedChildren) {
+        if (from >= to) {
+            return false;
+        }
+        return excludedChildren == null || excludedChildren.nextClearBit(from - firstChild) < to - firstChild;
+    }
+
+    /**
+     * @param excludedChildren ordinals of children (relative to the first child of this node) to skip
+     */
+    private void addChildToMatchesAndSearchInNextLevel(Module module, FileType fileType,
+                                                       List<SuggestionNode> matchesRootTillParentNode, int numOfAncestors, String[] querySegmentPrefixes,
+                                                       int querySegmentPrefixStartIndex, int from, int to, @Nullable BitSet excludedChildren,
+                                                       SuggestionCollector collector) {
+        int firstChild = arena.firstChild(id);
+        for (int child = from; child < to && !collector.isFull(); child++) {
+            // one checkpoint per visited node, so that a search the user has typed past stops promptly
+            ProgressManager.checkCanceled();
+            if (excludedChildren != null && excludedChildren.get(child - firstChild)) {
+                continue;
+            }
+            MetadataSuggestionNode childNode = arena.node(child);
+            List<SuggestionNode> matchesRootTillChild = MatchPath.extend(matchesRootTillParentNode, childNode);
+            childNode.collectKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillChild, numOfAncestors,
+                    querySegmentPrefixes, querySegmentPrefixStartIndex, null, collector);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArenaSuggestionNode)) {
+            return false;
+        }
+        ArenaSuggestionNode that = (ArenaSuggestionNode) o;
+        return arena == that.arena && id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(arena) + id;
+    }
+
+    @Override
+    public String toString() {
+        return "ArenaSuggestionNode(originalName=" + getOriginalName() + ")";
+    }
+
+    private enum SuggestionKind {
+        PROPERTY, PROPERTY_RAW_NAMES, GROUP
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.pine.fast.plugin.suggestion.metadata;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingInt;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.suggestion.SearchBudget;
+import com.pine.fast.plugin.suggestion.SuggestionNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 容错（typo tolerant）的 key 搜索，精确搜索没有结果时使用
+ * <p>
+ * Walks the frozen key tree with a bounded edit distance automaton, simulated as one row of the (optimal string
+ * alignment) distance matrix per key character, so an adjacent transposition ({@code clcik}) counts as a single edit.
+ * A branch is abandoned as soon as every cell of its row exceeds the bound, which keeps the cost proportional to the
+ * part of the tree within reach of the query rather than to the number of keys.
+ * <p>
+ * Keys are the sanitised names joined with {@code .}. As the query is what the user has typed so far, it may end
+ * anywhere within the last segment of a key: a node matches when the query is within the bound of some prefix of its
+ * own name (appended to the path), the distance being the smallest such one
+ *
+ * @author pine
+ */
+public final class FuzzyKeySearch {
+
+    private static final char SEGMENT_DELIMITER = '.';
+
+    private final char[] query;
+    private final int maxDistance;
+    private final SearchBudget budget;
+    private final List<Match> matches = new ArrayList<>();
+    /**
+     * Nodes from the search start till the node being visited
+     */
+    private final List<SuggestionNode> path = new ArrayList<>();
+
+    private FuzzyKeySearch(String query, int maxDistance, SearchBudget budget) {
+        this.query = query.toCharArray();
+        this.maxDistance = maxDistance;
+        this.budget = budget;
+    }
+
+    /**
+     * @return number of edits tolerated for a query of the given length, 0 if the query is too short to be fuzzy
+     * matched meaningfully
+     */
+    public static int maxDistanceFor(int queryLength) {
+        if (queryLength <= 2) {
+            return 0;
+        }
+        return queryLength <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Searches the descendants of the last node of {@code matchesRootTillParent}
+     *
+     * @see #search(List, Collection, String, Set, SearchBudget)
+     */
+    public static List<Match> searchChildren(List<? extends SuggestionNode> matchesRootTillParent, String query,
+                                             @Nullable Set<String> siblingsToExclude, SearchBudget budget) {
+        SuggestionNode parent = matchesRootTillParent.get(matchesRootTillParent.size() - 1);
+        if (!(parent instanceof ArenaSuggestionNode)) {
+            return Collections.emptyList();
+        }
+        SuggestionNodeArena arena = ((ArenaSuggestionNode) parent).arena();
+        int parentId = ((ArenaSuggestionNode) parent).id();
+        List<MetadataSuggestionNode> children = new ArrayList<>(arena.childCount(parentId));
+        int end = arena.firstChild(parentId) + arena.childCount(parentId);
+        for (int child = arena.firstChild(parentId); child < end; child++) {
+            children.add(arena.node(child));
+        }
+        return search(matchesRootTillParent, children, query, siblingsToExclude, budget);
+    }
+
+    /**
+     * @param matchesRootTillParent path from root till the parent of {@code nodesToSearchWithin}, empty for top level
+     * @param nodesToSearchWithin   siblings to start the search from, only {@link ArenaSuggestionNode}s are searched
+     * @param query                 sanitised, dot delimited query
+     * @param siblingsToExclude     names of {@code nodesToSearchWithin} to skip
+     * @param budget                once spent, the walk stops & the matches found till then are returned
+     * @return matches ordered by distance, then by path. A node whose ancestor matched at the same or a lower distance
+     * is not reported separately
+     */
+    public static List<Match> search(List<? extends SuggestionNode> matchesRootTillParent,
+                                     Collection<? extends MetadataSuggestionNode> nodesToSearchWithin, String query,
+                                     @Nullable Set<String> siblingsToExclude, SearchBudget budget) {
+        int maxDistance = maxDistanceFor(query.length());
+        if (maxDistance == 0) {
+            return Collections.emptyList();
+        }
+        FuzzyKeySearch search = new FuzzyKeySearch(query, maxDistance, budget);
+        search.path.addAll(matchesRootTillParent);
+        int[] initialRow = new int[query.length() + 1];
+        for (int j = 0; j < initialRow.length; j++) {
+            initialRow[j] = j;
+        }
+        for (MetadataSuggestionNode node : nodesToSearchWithin) {
+            if (node instanceof ArenaSuggestionNode
+                    && (siblingsToExclude == null || !siblingsToExclude.contains(node.getName()))) {
+                ArenaSuggestionNode arenaNode = (ArenaSuggestionNode) node;
+                search.visit(arenaNode.arena(), arenaNode.id(), false, null, initialRow, (char) 0, 0,
+                        Integer.MAX_VALUE);
+            }
+        }
+        search.matches.sort(comparingInt(Match::getDistance).thenComparing(comparing(Match::getPathText)));
+        return search.matches;
+    }
+
+    /**
+     * @param previousRow  row before {@code row}, required for transpositions. null if {@code row} is the first row
+     * @param row          distance row after the key text of all ancestors
+     * @param previousChar last character of the key text of all ancestors
+     * @param keyLength    length of the key text of all ancestors
+     * @param bestAncestor smallest distance an ancestor was reported with
+     */
+    private void visit(SuggestionNodeArena arena, int id, boolean delimited, @Nullable int[] previousRow, int[] row,
+                       char previousChar, int keyLength, int bestAncestor) {
+        ProgressManager.checkCanceled();
+        if (budget.isExhausted()) {
+            return;
+        }
+        String name = arena.name(id);
+        int nodeDistance = Integer.MAX_VALUE;
+        boolean reachable = true;
+        for (int i = delimited ? -1 : 0; i < name.length() && reachable; i++) {
+            char c = i < 0 ? SEGMENT_DELIMITER : name.charAt(i);
+            int[] nextRow = nextRow(previousRow, row, c, previousChar, ++keyLength);
+            previousRow = row;
+            row = nextRow;
+            previousChar = c;
+            if (i >= 0) {
+                nodeDistance = Math.min(nodeDistance, row[query.length]);
+            }
+            reachable = min(row) <= maxDistance;
+        }
+
+        path.add(arena.node(id));
+        if (nodeDistance <= maxDistance && nodeDistance < bestAncestor) {
+            matches.add(new Match(new ArrayList<>(path), nodeDistance));
+            bestAncestor = nodeDistance;
+        }
+        // descendants are only worth visiting if they can beat whatever was already reported on this path
+        if (reachable && arena.property(id) == null && min(row) < bestAncestor) {
+            int end = arena.firstChild(id) + arena.childCount(id);
+            for (int child = arena.firstChild(id); child < end; child++) {
+                visit(arena, child, true, previousRow, row, previousChar, keyLength, bestAncestor);
+            }
+        }
+        path.remove(path.size() - 1);
+    }
+
+    private int[] nextRow(@Nullable int[] previousRow, int[] row, char c, char previousChar, int keyLength) {
+        int[] nextRow = new int[row.length];
+        nextRow[0] = keyLength;
+        for (int j = 1; j < row.length; j++) {
+            int substitution = row[j - 1] + (query[j - 1] == c ? 0 : 1);
+            int distance = Math.min(Math.min(row[j] + 1, nextRow[j - 1] + 1), substitution);
+            if (previousRow != null && j > 1 && query[j - 1] == previousChar && query[j - 2] == c) {
+                distance = Math.min(distance, previousRow[j - 2] + 1);
+            }
+            nextRow[j] = distance;
+        }
+        return nextRow;
+    }
+
+    private static int min(int[] row) {
+        int min = row[0];
+        for (int value : row) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Match {
+
+        /**
+         * Path from root till the matched node
+         */
+        private final List<SuggestionNode> matchesRootTillMe;
+        private final int distance;
+
+        private String getPathText() {
+            StringBuilder builder = new StringBuilder();
+            for (SuggestionNode node : matchesRootTillMe) {
+                builder.append(node.getName()).append(SEGMENT_DELIMITER);
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
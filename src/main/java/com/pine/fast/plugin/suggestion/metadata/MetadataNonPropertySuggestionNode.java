@@ -1,13 +1,12 @@
 package com.pine.fast.plugin.suggestion.metadata;
 
-import static java.util.Collections.unmodifiableList;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.suggestion.MatchPath;
 import com.pine.fast.plugin.suggestion.Suggestion;
 import com.pine.fast.plugin.suggestion.SuggestionNode;
 import com.pine.fast.plugin.suggestion.completion.FileType;
@@ -15,6 +14,7 @@ import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadata
 import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -33,7 +33,6 @@ import lombok.Setter;
 import lombok.ToString;
 import org.apache.commons.collections4.Trie;
 import org.apache.commons.collections4.trie.PatriciaTrie;
-import org.jetbrains.annotations.NotNull;
 
 /**
  * Represents a node in the hierarchy of suggestions Useful for navigating all suggestions & also acts as source of
@@ -246,6 +245,24 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         parentNode.addProperty(property, rawPathSegments[rawPathSegments.length - 1], belongsTo);
     }
 
+    /**
+     * Attaches an already constructed child. Used when the tree structure is known upfront (prebuilt index), so no
+     * path matching is required
+     *
+     * @param childNode child whose parent is this node
+     */
+    public void addChild(MetadataSuggestionNode childNode) {
+        if (!hasChildren()) {
+            childLookup = new THashMap<>();
+            childrenTrie = new PatriciaTrie<>();
+        }
+
+        assert childLookup != null;
+        assert childrenTrie != null;
+        childLookup.put(childNode.getName(), childNode);
+        childrenTrie.put(childNode.getName(), childNode);
+    }
+
     @Override
     @Nullable
     public SortedSet<Suggestion> findKeySuggestionsForQueryPrefix(Module module, FileType fileType,
@@ -280,17 +297,7 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
                         childrenTrie.prefixMap(querySegmentPrefix);
                 Collection<MetadataSuggestionNode> matchedChildren = sortedPrefixToMetadataNode.values();
 
-                Set<MetadataSuggestionNode> exclusionMembers = null;
-                if (siblingsToExclude != null) {
-                    exclusionMembers = siblingsToExclude.stream().map(childLookup::get).collect(toSet());
-                }
-
-                if (!isEmpty(exclusionMembers) && !isEmpty(matchedChildren)) {
-                    Set<MetadataSuggestionNode> finalExclusionMembers = exclusionMembers;
-                    matchedChildren =
-                            matchedChildren.stream().filter(value -> !finalExclusionMembers.contains(value))
-                                    .collect(toList());
-                }
+                matchedChildren = withoutExcluded(matchedChildren, siblingsToExclude);
 
                 if (matchedChildren.size() != 0) {
                     SortedSet<Suggestion> suggestions =
@@ -304,13 +311,13 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
                         // lets search in the next level
                         return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
                                 numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-                                computeChildrenToIterateOver(childLookup, exclusionMembers));
+                                withoutExcluded(childLookup.values(), siblingsToExclude));
                     }
                 } else {
                     // lets search in the next level
                     return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
                             numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-                            computeChildrenToIterateOver(childLookup, exclusionMembers));
+                            withoutExcluded(childLookup.values(), siblingsToExclude));
                 }
             }
             return null;
@@ -337,6 +344,19 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         return builder.toString();
     }
 
+    @Override
+    public MetadataSuggestionNode copy(@Nullable MetadataNonPropertySuggestionNode parent) {
+        MetadataNonPropertySuggestionNode copy = MetadataNonPropertySuggestionNode.builder().name(name)
+                .originalName(originalName).group(group).parent(parent).belongsTo(new THashSet<>(belongsTo)).build();
+        if (hasChildren()) {
+            assert childrenTrie != null;
+            for (MetadataSuggestionNode child : childrenTrie.values()) {
+                copy.addChild(child.copy(copy));
+            }
+        }
+        return copy;
+    }
+
     /**
      * @param containerPath Represents path to the metadata file container
      * @return true if no children left & this item does not belong to any other source
@@ -407,18 +427,22 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         return childrenTrie != null && childrenTrie.size() != 0;
     }
 
-    private Collection<MetadataSuggestionNode> computeChildrenToIterateOver(
-            @NotNull Map<String, MetadataSuggestionNode> childLookup,
-            Set<MetadataSuggestionNode> exclusionMembers) {
-        Collection<MetadataSuggestionNode> childrenToIterateOver;
-        if (!isEmpty(exclusionMembers)) {
-            childrenToIterateOver =
-                    childLookup.values().stream().filter(value -> !exclusionMembers.contains(value))
-                            .collect(toList());
-        } else {
-            childrenToIterateOver = childLookup.values();
+    /**
+     * Children are keyed by sanitised name, so a child is excluded iff its name is. Only unfrozen trees are searched
+     * through here, frozen ones use the bitset based exclusion of {@link ArenaSuggestionNode}
+     */
+    private static Collection<MetadataSuggestionNode> withoutExcluded(Collection<MetadataSuggestionNode> children,
+                                                                     @Nullable Set<String> siblingsToExclude) {
+        if (isEmpty(siblingsToExclude) || isEmpty(children)) {
+            return children;
+        }
+        List<MetadataSuggestionNode> remainingChildren = new ArrayList<>(children.size());
+        for (MetadataSuggestionNode child : children) {
+            if (!siblingsToExclude.contains(child.getName())) {
+                remainingChildren.add(child);
+            }
         }
-        return childrenToIterateOver;
+        return remainingChildren;
     }
 
     private void addProperty(SpringConfigurationMetadataProperty property, String originalName,
@@ -476,8 +500,8 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
                                                                         Collection<MetadataSuggestionNode> childNodes) {
         SortedSet<Suggestion> suggestions = null;
         for (MetadataSuggestionNode child : childNodes) {
-            List<SuggestionNode> matchesRootTillChild =
-                    unmodifiableList(GenericUtil.newListWithMembers(matchesRootTillParentNode, child));
+            ProgressManager.checkCanceled();
+            List<SuggestionNode> matchesRootTillChild = MatchPath.extend(matchesRootTillParentNode, child);
             Set<Suggestion> matchedSuggestions = child
                     .findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillChild, numOfAncestors,
                             querySegmentPrefixes, querySegmentPrefixStartIndex, null);
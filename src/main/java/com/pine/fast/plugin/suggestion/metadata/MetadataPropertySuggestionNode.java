@@ -209,6 +209,12 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
         return originalName + (isRoot() ? "(root + property)" : "(property)");
     }
 
+    @Override
+    public MetadataSuggestionNode copy(@Nullable MetadataNonPropertySuggestionNode parent) {
+        return MetadataPropertySuggestionNode.builder().name(name).originalName(originalName).parent(parent)
+                .belongsTo(new THashSet<>(belongsTo)).property(property.copy()).build();
+    }
+
     @Override
     public boolean removeRefCascadeDown(String containerPath) {
         belongsTo.remove(containerPath);
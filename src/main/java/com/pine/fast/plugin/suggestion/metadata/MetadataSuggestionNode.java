@@ -47,6 +47,12 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
                 querySegmentPrefixes);
     }
 
+    /**
+     * Adds the reference to this node & all its ancestors, root included. Otherwise a root created by one source would
+     * be dropped with all its children when that source is removed, even if other sources still contribute to it
+     *
+     * @param containerPath Represents path to the metadata file container
+     */
     public void addRefCascadeTillRoot(String containerPath) {
         MetadataSuggestionNode node = this;
         do {
@@ -55,9 +61,18 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
             }
             node.getBelongsTo().add(containerPath);
             node = node.getParent();
-        } while (node != null && !node.isRoot());
+        } while (node != null);
     }
 
+    /**
+     * Used for copy on write when a published subtree needs to be modified
+     *
+     * @param parent parent of the copy, null for roots
+     * @return deep copy of the subtree rooted at this node. Properties are copied as well, so that their hints can be
+     * changed, the hints themselves are shared
+     */
+    public abstract MetadataSuggestionNode copy(@Nullable MetadataNonPropertySuggestionNode parent);
+
     public abstract Set<String> getBelongsTo();
 
     /**
@@ -74,7 +89,7 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
     public abstract String getOriginalName();
 
     @Nullable
-    protected abstract MetadataNonPropertySuggestionNode getParent();
+    protected abstract MetadataSuggestionNode getParent();
 
     protected abstract boolean isRoot();
 
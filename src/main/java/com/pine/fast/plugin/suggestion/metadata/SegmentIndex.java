@@ -0,0 +1,87 @@
+package com.pine.fast.plugin.suggestion.metadata;
+
+import static java.util.Comparator.comparingInt;
+
+import com.pine.fast.plugin.suggestion.SuggestionNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+/**
+ * 路径段倒排索引：每个（净化后的）路径段名 -> 带有该名字的所有非根节点
+ * <p>
+ * Lets a query whose first segment matches no root ({@code platformName}) jump straight to {@code
+ * desiredCapabilities.platformName} instead of walking every subtree on each keystroke. Only the frozen tree is
+ * indexed, children that are derived from class metadata at search time are not. Immutable once built
+ *
+ * @author pine
+ */
+public final class SegmentIndex {
+
+    private final Trie<String, List<ArenaSuggestionNode>> segmentToNodes;
+
+    private SegmentIndex(Trie<String, List<ArenaSuggestionNode>> segmentToNodes) {
+        this.segmentToNodes = segmentToNodes;
+    }
+
+    /**
+     * @param roots roots of the search index, only {@link ArenaSuggestionNode}s are indexed
+     */
+    public static SegmentIndex build(Collection<MetadataSuggestionNode> roots) {
+        Trie<String, List<ArenaSuggestionNode>> segmentToNodes = new PatriciaTrie<>();
+        for (MetadataSuggestionNode root : roots) {
+            if (root instanceof ArenaSuggestionNode) {
+                ArenaSuggestionNode arenaRoot = (ArenaSuggestionNode) root;
+                addDescendants(arenaRoot.arena(), arenaRoot.id(), segmentToNodes);
+            }
+        }
+        return new SegmentIndex(segmentToNodes);
+    }
+
+    private static void addDescendants(SuggestionNodeArena arena, int id,
+                                       Trie<String, List<ArenaSuggestionNode>> segmentToNodes) {
+        int end = arena.firstChild(id) + arena.childCount(id);
+        for (int child = arena.firstChild(id); child < end; child++) {
+            segmentToNodes.computeIfAbsent(arena.name(child), name -> new ArrayList<>(1))
+                    .add(new ArenaSuggestionNode(arena, child));
+            addDescendants(arena, child, segmentToNodes);
+        }
+    }
+
+    /**
+     * @param segmentPrefix sanitised prefix of a single path segment
+     * @return paths from root till every non root node whose name starts with the prefix, shallower ones first
+     */
+    public List<List<SuggestionNode>> findPathsForPrefix(String segmentPrefix) {
+        Collection<List<ArenaSuggestionNode>> matches = segmentToNodes.prefixMap(segmentPrefix).values();
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<SuggestionNode>> paths = new ArrayList<>();
+        for (List<ArenaSuggestionNode> nodes : matches) {
+            for (ArenaSuggestionNode node : nodes) {
+                paths.add(pathFromRoot(node));
+            }
+        }
+        paths.sort(comparingInt(List::size));
+        return paths;
+    }
+
+    public int size() {
+        return segmentToNodes.size();
+    }
+
+    private static List<SuggestionNode> pathFromRoot(ArenaSuggestionNode node) {
+        SuggestionNodeArena arena = node.arena();
+        List<SuggestionNode> path = new ArrayList<>();
+        for (int id = node.id(); id != SuggestionNodeArena.NO_NODE; id = arena.parent(id)) {
+            path.add(arena.node(id));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+}
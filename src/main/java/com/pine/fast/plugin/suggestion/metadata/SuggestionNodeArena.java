@@ -0,0 +1,295 @@
+package com.pine.fast.plugin.suggestion.metadata;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Comparator.comparing;
+
+import com.pine.fast.plugin.misc.StringPool;
+import com.pine.fast.plugin.suggestion.Suggestion;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataGroup;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * 冻结后的紧凑索引树（structure of arrays），发布到快照中的节点都存放在这里，只读
+ * <p>
+ * Every node is an int id into parallel arrays. Nodes are laid out breadth first, so the children of a node occupy the
+ * contiguous id range {@code [firstChild, firstChild + childCount)} (the next sibling of a node is simply the next id)
+ * & are sorted by sanitised name. Exact child lookup is a binary search, a prefix lookup is a binary searched range.
+ * This replaces the {@code childLookup} map + {@code childrenTrie} pair, the builder objects & the per node
+ * {@code belongsTo} set of {@link MetadataNonPropertySuggestionNode}/{@link MetadataPropertySuggestionNode}, which
+ * are now only used while building/modifying the tree.
+ * <p>
+ * An arena can hold a forest, the roots being ids {@code [0, rootCount)}. {@link ArenaSuggestionNode} is the
+ * {@link com.pine.fast.plugin.suggestion.SuggestionNode} view of a single id & is created on demand while searching
+ *
+ * @author pine
+ */
+public final class SuggestionNodeArena {
+
+    static final int NO_NODE = -1;
+
+    private final int rootCount;
+
+    /**
+     * Sanitised names, sorted within every sibling range
+     */
+    private final String[] names;
+    private final String[] originalNames;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] childCounts;
+    /**
+     * Non null for property nodes
+     */
+    private final SpringConfigurationMetadataProperty[] properties;
+    /**
+     * Non null for non property nodes that have a group entry
+     */
+    private final SpringConfigurationMetadataGroup[] groups;
+    /**
+     * Mostly the same couple of sets, interned while freezing
+     */
+    private final Set<String>[] belongsTo;
+    /**
+     * Key suggestions built so far, see {@link #cachedSuggestion(int, int, int, Supplier)}. Filled lazily, as building
+     * them upfront would also decode every description
+     */
+    private final Map<Long, Suggestion> suggestionCache = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private SuggestionNodeArena(int rootCount, int nodeCount) {
+        this.rootCount = rootCount;
+        this.names = new String[nodeCount];
+        this.originalNames = new String[nodeCount];
+        this.parents = new int[nodeCount];
+        this.firstChildren = new int[nodeCount];
+        this.childCounts = new int[nodeCount];
+        this.properties = new SpringConfigurationMetadataProperty[nodeCount];
+        this.groups = new SpringConfigurationMetadataGroup[nodeCount];
+        this.belongsTo = new Set[nodeCount];
+    }
+
+    /**
+     * @param roots roots of trees built with {@link MetadataNonPropertySuggestionNode}/{@link
+     *              MetadataPropertySuggestionNode}. The trees are not modified & can be discarded afterwards
+     * @return arena holding a copy of all the trees, roots in the given order
+     */
+    public static SuggestionNodeArena freeze(Collection<? extends MetadataSuggestionNode> roots) {
+        List<MetadataSuggestionNode> nodesInOrder = new ArrayList<>(roots);
+        List<Integer> parentIds = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            parentIds.add(NO_NODE);
+        }
+        // breadth first, so that children of every node end up next to each other
+        List<int[]> childRanges = new ArrayList<>();
+        for (int i = 0; i < nodesInOrder.size(); i++) {
+            List<MetadataSuggestionNode> children = childrenOf(nodesInOrder.get(i));
+            childRanges.add(new int[]{nodesInOrder.size(), children.size()});
+            for (MetadataSuggestionNode child : children) {
+                nodesInOrder.add(child);
+                parentIds.add(i);
+            }
+        }
+
+        SuggestionNodeArena arena = new SuggestionNodeArena(roots.size(), nodesInOrder.size());
+        Map<Set<String>, Set<String>> internedBelongsTo = new THashMap<>();
+        // the same segment names (`enabled`, `host` e.t.c) show up under many parents
+        StringPool stringPool = new StringPool();
+        for (int i = 0; i < nodesInOrder.size(); i++) {
+            MetadataSuggestionNode node = nodesInOrder.get(i);
+            arena.names[i] = stringPool.intern(node.getName());
+            arena.originalNames[i] = stringPool.intern(node.getOriginalName());
+            arena.parents[i] = parentIds.get(i);
+            arena.firstChildren[i] = childRanges.get(i)[0];
+            arena.childCounts[i] = childRanges.get(i)[1];
+            if (node.isProperty()) {
+                arena.properties[i] = MetadataPropertySuggestionNode.class.cast(node).getProperty();
+            } else {
+                arena.groups[i] = MetadataNonPropertySuggestionNode.class.cast(node).getGroup();
+            }
+            arena.belongsTo[i] = internedBelongsTo
+                    .computeIfAbsent(node.getBelongsTo(), set -> unmodifiableSet(new THashSet<>(set)));
+        }
+        return arena;
+    }
+
+    private static List<MetadataSuggestionNode> childrenOf(MetadataSuggestionNode node) {
+        List<MetadataSuggestionNode> children = new ArrayList<>();
+        if (!node.isProperty()) {
+            MetadataNonPropertySuggestionNode nonPropertyNode = MetadataNonPropertySuggestionNode.class.cast(node);
+            if (nonPropertyNode.getChildrenTrie() != null) {
+                children.addAll(nonPropertyNode.getChildrenTrie().values());
+                children.sort(comparing(MetadataSuggestionNode::getName));
+            }
+        }
+        return children;
+    }
+
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    /**
+     * @return view of all roots, in the order passed to {@link #freeze(Collection)}
+     */
+    public List<MetadataSuggestionNode> getRoots() {
+        List<MetadataSuggestionNode> roots = new ArrayList<>(rootCount);
+        for (int id = 0; id < rootCount; id++) {
+            roots.add(node(id));
+        }
+        return roots;
+    }
+
+    public MetadataSuggestionNode node(int id) {
+        return new ArenaSuggestionNode(this, id);
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    String originalName(int id) {
+        return originalNames[id];
+    }
+
+    int parent(int id) {
+        return parents[id];
+    }
+
+    int firstChild(int id) {
+        return firstChildren[id];
+    }
+
+    int childCount(int id) {
+        return childCounts[id];
+    }
+
+    @Nullable
+    SpringConfigurationMetadataProperty property(int id) {
+        return properties[id];
+    }
+
+    @Nullable
+    SpringConfigurationMetadataGroup group(int id) {
+        return groups[id];
+    }
+
+    Set<String> belongsTo(int id) {
+        return belongsTo[id];
+    }
+
+    /**
+     * @return id of the child with the given sanitised name, {@link #NO_NODE} if there is no such child
+     */
+    int findChild(int id, String name) {
+        int from = firstChildren[id];
+        int index = lowerBound(from, from + childCounts[id], name);
+        return index < from + childCounts[id] && names[index].equals(name) ? index : NO_NODE;
+    }
+
+    /**
+     * Children of a node are contiguous, so {@code child - firstChild(id)} is a dense ordinal of the child within its
+     * parent. Sets the ordinal of every child whose name is one of the given ones
+     *
+     * @param names    sanitised names
+     * @param excluded cleared by the caller, sized on demand
+     * @return true if any bit was set
+     */
+    boolean markChildren(int id, Collection<String> names, BitSet excluded) {
+        boolean marked = false;
+        for (String name : names) {
+            int child = findChild(id, name);
+            if (child != NO_NODE) {
+                excluded.set(child - firstChildren[id]);
+                marked = true;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * @return first child whose name starts with the prefix, children with the prefix end at {@link
+     * #prefixRangeEnd(int, int, String)}
+     */
+    int prefixRangeStart(int id, String prefix) {
+        int from = firstChildren[id];
+        return lowerBound(from, from + childCounts[id], prefix);
+    }
+
+    int prefixRangeEnd(int id, int rangeStart, String prefix) {
+        int end = firstChildren[id] + childCounts[id];
+        int index = rangeStart;
+        while (index < end && names[index].startsWith(prefix)) {
+            index++;
+        }
+        return index;
+    }
+
+    private int lowerBound(int from, int to, String key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Suggestions of frozen nodes only depend on the node, the number of ancestors the display text starts after & the
+     * way it is built, never on the query, so they are built once per snapshot & shared by all searches
+     *
+     * @param variant identifies how the suggestion is built (kind of suggestion, file type), below 256
+     */
+    Suggestion cachedSuggestion(int id, int numOfAncestors, int variant, Supplier<Suggestion> builder) {
+        long key = ((long) id << 32) | ((long) numOfAncestors << 8) | variant;
+        return suggestionCache.computeIfAbsent(key, ignored -> builder.get());
+    }
+
+    int depth(int id) {
+        int depth = 0;
+        for (int parent = parents[id]; parent != NO_NODE; parent = parents[parent]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * @return modifiable copy of the subtree, used for copy on write. Properties are copied too, as hints get set on
+     * them & the arena may be shared with other snapshots
+     */
+    MetadataSuggestionNode thaw(int id, @Nullable MetadataNonPropertySuggestionNode parent) {
+        SpringConfigurationMetadataProperty property = properties[id];
+        if (property != null) {
+            return MetadataPropertySuggestionNode.builder().name(names[id]).originalName(originalNames[id])
+                    .parent(parent).belongsTo(new THashSet<>(belongsTo[id])).property(property.copy()).build();
+        }
+        MetadataNonPropertySuggestionNode node = MetadataNonPropertySuggestionNode.builder().name(names[id])
+                .originalName(originalNames[id]).group(groups[id]).parent(parent)
+                .belongsTo(new THashSet<>(belongsTo[id])).build();
+        int end = firstChildren[id] + childCounts[id];
+        for (int child = firstChildren[id]; child < end; child++) {
+            node.addChild(thaw(child, node));
+        }
+        return node;
+    }
+
+}
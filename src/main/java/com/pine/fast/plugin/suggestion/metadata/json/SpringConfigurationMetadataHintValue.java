@@ -2,6 +2,7 @@ package com.pine.fast.plugin.suggestion.metadata.json;
 
 import com.google.gson.annotations.SerializedName;
 import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.suggestion.MatchPath;
 import com.pine.fast.plugin.suggestion.Suggestion;
 import com.pine.fast.plugin.suggestion.SuggestionNode;
 import com.pine.fast.plugin.suggestion.completion.FileType;
@@ -75,7 +76,7 @@ public class SpringConfigurationMetadataHintValue {
     @NotNull
     public Suggestion buildSuggestionForKey(FileType fileType,
                                             List<SuggestionNode> matchesRootTillParentNode, int numOfAncestors, SuggestionNode match) {
-        List<SuggestionNode> matchesRootTillMe = GenericUtil.newListWithMembers(matchesRootTillParentNode, match);
+        List<SuggestionNode> matchesRootTillMe = MatchPath.extend(matchesRootTillParentNode, match);
         Suggestion.SuggestionBuilder builder = Suggestion.builder().suggestionToDisplay(
                 GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
                 .description(description).numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe);
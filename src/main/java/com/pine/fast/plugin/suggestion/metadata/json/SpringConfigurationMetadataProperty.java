@@ -10,6 +10,7 @@ import static java.util.stream.Collectors.toSet;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.pine.fast.plugin.misc.GenericUtil;
 import com.pine.fast.plugin.misc.Icons;
 import com.pine.fast.plugin.suggestion.Suggestion;
@@ -114,6 +115,31 @@ public class SpringConfigurationMetadataProperty
     @Getter
     private String originalName;
 
+    /**
+     * Used for copy on write: a property of a published snapshot may be shared with other snapshots & projects, so
+     * hints are only ever set on a copy. Hints themselves are never modified & are shared with the copy, as is the
+     * resolved lazy state
+     *
+     * @return copy that can be modified without affecting this property
+     */
+    public SpringConfigurationMetadataProperty copy() {
+        SpringConfigurationMetadataProperty copy = new SpringConfigurationMetadataProperty();
+        copy.name = name;
+        copy.className = className;
+        copy.description = description;
+        copy.sourceType = sourceType;
+        copy.deprecation = deprecation;
+        copy.defaultValue = defaultValue;
+        copy.genericOrKeyHint = genericOrKeyHint;
+        copy.valueHint = valueHint;
+        copy.delegate = delegate;
+        copy.nodeType = nodeType;
+        copy.delegateCreationAttempted = delegateCreationAttempted;
+        copy.isAppendColon = isAppendColon;
+        copy.originalName = originalName;
+        return copy;
+    }
+
     @Nullable
     public List<SuggestionNode> findChildDeepestKeyMatch(Module module,
                                                          List<SuggestionNode> matchesRootTillParentNode, String[] pathSegments,
@@ -151,6 +177,8 @@ public class SpringConfigurationMetadataProperty
                                                                        FileType fileType, List<SuggestionNode> matchesRootTillMe, int numOfAncestors,
                                                                        String[] querySegmentPrefixes, int querySegmentPrefixStartIndex,
                                                                        @Nullable Set<String> siblingsToExclude) {
+        // searching below a property may descend into class metadata, which can be arbitrarily deep
+        ProgressManager.checkCanceled();
         boolean lastPathSegment = querySegmentPrefixStartIndex == querySegmentPrefixes.length - 1;
         if (lastPathSegment && !isLeaf(module)) {
             if (isMapWithPredefinedKeys()) { // map
@@ -243,6 +271,15 @@ public class SpringConfigurationMetadataProperty
         return nodeType;
     }
 
+    /**
+     * Resolves the state that would otherwise be computed lazily on first query, so that the property is never
+     * modified by concurrent readers once it is published as part of an index snapshot
+     */
+    public void resolveLazyState() {
+        getSuggestionNodeType(null);
+        getDelegate(null);
+    }
+
     public void refreshDelegate(Module module) {
         if (className != null) {
             // Lets update the delegate information only if anything has changed from last time we saw this
@@ -298,6 +335,33 @@ public class SpringConfigurationMetadataProperty
         updateNodeType();
     }
 
+    /**
+     * @return true if the very hint is set on this property, as generic/key or value hint
+     */
+    public boolean hasHint(SpringConfigurationMetadataHint hint) {
+        return genericOrKeyHint == hint || valueHint == hint;
+    }
+
+    /**
+     * Removes the hint if it is still set on this property, i.e unless another hint replaced it since. The node type
+     * is resolved again, without the hint
+     *
+     * @return true if the hint was removed
+     */
+    public boolean removeHint(SpringConfigurationMetadataHint hint) {
+        if (genericOrKeyHint == hint) {
+            genericOrKeyHint = null;
+        } else if (valueHint == hint) {
+            valueHint = null;
+        } else {
+            return false;
+        }
+        nodeType = null;
+        updateNodeType();
+        getSuggestionNodeType(null);
+        return true;
+    }
+
     private Stream<SpringConfigurationMetadataHintValue> getMatchesAfterExcludingSiblings(
             @NotNull SpringConfigurationMetadataHint hintFindValueAgainst,
             Collection<SpringConfigurationMetadataHintValue> matches,
@@ -13,7 +13,10 @@ public class SpringConfigurationMetadataValueProviderTypeDeserializer
     @Override
     public SpringConfigurationMetadataValueProviderType deserialize(JsonElement jsonElement,
                                                                     Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
-        String providerTypeAsStr = jsonElement.getAsString();
+        return toProviderType(jsonElement.getAsString());
+    }
+
+    public static SpringConfigurationMetadataValueProviderType toProviderType(String providerTypeAsStr) {
         switch (providerTypeAsStr) {
             case "class-reference":
                 return SpringConfigurationMetadataValueProviderType.class_reference;
@@ -0,0 +1,45 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.codeInsight.completion.impl.CamelHumpMatcher;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * 用补全结果集的前缀匹配器在搜索过程中过滤建议，被拒绝的建议不必构建
+ * <p>
+ * Must never reject a suggestion the completion framework would accept, otherwise it would silently go missing. Lookup
+ * elements are created case insensitive, for which {@link CamelHumpMatcher} matches ignoring case, so the case
+ * insensitive variant of the matcher is tried too. Other matchers are applied as is. Thread safe, as the matchers are immutable
+ *
+ * @author pine
+ */
+final class LookupStringMatcher implements Predicate<String> {
+
+    private final PrefixMatcher matcher;
+    private final PrefixMatcher caseInsensitiveMatcher;
+
+    LookupStringMatcher(PrefixMatcher matcher) {
+        this.matcher = matcher;
+        this.caseInsensitiveMatcher = matcher instanceof CamelHumpMatcher ?
+                ((CamelHumpMatcher) matcher).cloneWithCaseSensitive(false) : matcher;
+    }
+
+    /**
+     * @return what the suggestions accepted by this matcher depend on besides their text: the kind of matcher & its
+     * prefix. Case sensitivity is not part of it, as the case insensitive variant is always tried too
+     */
+    Object getScope() {
+        return Arrays.asList(matcher.getClass().getName(), matcher.getPrefix());
+    }
+
+    /**
+     * @param lookupString text the suggestion is displayed with, which is its only lookup string
+     */
+    @Override
+    public boolean test(String lookupString) {
+        return caseInsensitiveMatcher.prefixMatches(lookupString)
+                || (caseInsensitiveMatcher != matcher && matcher.prefixMatches(lookupString));
+    }
+
+}
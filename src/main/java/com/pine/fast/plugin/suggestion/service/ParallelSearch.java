@@ -0,0 +1,134 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.pine.fast.plugin.suggestion.SuggestionCollector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 大索引时把一段连续的候选项（根节点、简单属性）拆分成多个任务并行搜索
+ * <p>
+ * Ranges below the threshold are searched sequentially on the calling thread, so small indexes never pay for the
+ * hand off. Otherwise the range is split into leaves up front, every leaf searching its part into a {@link
+ * SuggestionCollector#fork() forked} collector. The calling thread merges the forks in range order, each one as soon as
+ * it and the ones before it are done, so the sink receives the results of the first leaves while the others are still
+ * running & the result stays the same as the one of a sequential search. Leaves run on the bounded {@link
+ * ParallelSearchPool} shared by all projects, each one in a read action under the progress indicator of the
+ * completion, so cancellation & pending write actions stop them just like they stop the calling thread
+ *
+ * @author pine
+ */
+final class ParallelSearch {
+
+    /**
+     * How often the calling thread checks for cancellation while it waits for a leaf
+     */
+    private static final long CANCEL_CHECK_MILLIS = 10;
+
+    private ParallelSearch() {
+    }
+
+    @FunctionalInterface
+    interface RangeSearch {
+
+        /**
+         * Searches the candidates {@code [from, to)} into the given collector
+         */
+        void search(int from, int to, SuggestionCollector collector);
+
+    }
+
+    /**
+     * @param threshold minimum number of candidates for the search to go parallel
+     */
+    static void search(int from, int to, int threshold, SuggestionCollector collector, RangeSearch rangeSearch) {
+        if (to - from < threshold || collector.isFull()) {
+            rangeSearch.search(from, to, collector);
+            return;
+        }
+        ParallelSearchPool searchPool = ParallelSearchPool.getInstance();
+        ForkJoinPool pool = searchPool.getParallelism() == 1 ? null : searchPool.getPool();
+        if (pool == null) {
+            rangeSearch.search(from, to, collector);
+            return;
+        }
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        int leafSize = Math.max(threshold / 4, (to - from) / (searchPool.getParallelism() * 4));
+        List<LeafTask> leaves = new ArrayList<>();
+        for (int leafFrom = from; leafFrom < to; leafFrom += leafSize) {
+            LeafTask leaf = new LeafTask(leafFrom, Math.min(leafFrom + leafSize, to), collector.fork(), rangeSearch,
+                    indicator);
+            leaves.add(leaf);
+            pool.execute(leaf);
+        }
+        try {
+            for (LeafTask leaf : leaves) {
+                collector.merge(await(leaf));
+            }
+        } finally {
+            // only left over after a failure or cancellation, the ones already running stop with the indicator
+            leaves.forEach(leaf -> leaf.cancel(false));
+        }
+    }
+
+    private static SuggestionCollector await(LeafTask leaf) {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return leaf.get(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // check for cancellation & wait again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private static final class LeafTask extends RecursiveTask<SuggestionCollector> {
+
+        private final int from;
+        private final int to;
+        private final SuggestionCollector fork;
+        private final RangeSearch rangeSearch;
+        private final ProgressIndicator indicator;
+
+        private LeafTask(int from, int to, SuggestionCollector fork, RangeSearch rangeSearch,
+                         ProgressIndicator indicator) {
+            this.from = from;
+            this.to = to;
+            this.fork = fork;
+            this.rangeSearch = rangeSearch;
+            this.indicator = indicator;
+        }
+
+        @Override
+        protected SuggestionCollector compute() {
+            boolean completed = ProgressManager.getInstance().runInReadActionWithWriteActionPriority(
+                    () -> rangeSearch.search(from, to, fork), indicator);
+            if (!completed) {
+                // a write action is pending, the completion is about to be restarted anyway
+                throw new ProcessCanceledException();
+            }
+            return fork;
+        }
+
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import javax.annotation.Nullable;
+
+/**
+ * {@link ParallelSearch} 使用的应用级线程池
+ * <p>
+ * The pool is only created by the first search that goes parallel, so sessions that never search a big index never
+ * start its threads. It is shut down when the application (or the plugin, on unload) disposes the service
+ *
+ * @author pine
+ */
+public final class ParallelSearchPool implements Disposable {
+
+    private final int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+    @Nullable
+    private ForkJoinPool pool;
+    private boolean disposed;
+
+    static ParallelSearchPool getInstance() {
+        return ServiceManager.getService(ParallelSearchPool.class);
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the pool, null once the service is disposed
+     */
+    @Nullable
+    synchronized ForkJoinPool getPool() {
+        if (pool == null && !disposed) {
+            pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("Fast Yaml Search-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.pine.fast.plugin.suggestion.service;
+
+/**
+ * 降级模式：补全连续多次超出时间预算后，关闭耗时的搜索方式（contains、deep & fuzzy 搜索）
+ * <p>
+ * A single slow request does not degrade the session, only {@link #OVERRUNS_TILL_DEGRADED} consecutive ones do. A
+ * degraded session recovers after {@link #FAST_REQUESTS_TILL_RECOVERED} consecutive requests that took less than half of
+ * their budget, or as soon as another snapshot is searched, as the slow requests may have been down to the index it
+ * replaced. Only the time spent searching is recorded. Thread safe
+ *
+ * @author pine
+ */
+final class SearchDegradation {
+
+    static final int OVERRUNS_TILL_DEGRADED = 3;
+    static final int FAST_REQUESTS_TILL_RECOVERED = 20;
+
+    enum Change {
+        NONE, DEGRADED, RECOVERED
+    }
+
+    private long snapshotVersion;
+    private boolean degraded;
+    private int overruns;
+    private int fastRequests;
+
+    /**
+     * @return true if the expensive search modes are off for searches on the given snapshot
+     */
+    synchronized boolean isDegraded(long snapshotVersion) {
+        resetOnNewSnapshot(snapshotVersion);
+        return degraded;
+    }
+
+    /**
+     * @param searchMillis time the request spent searching
+     * @param budgetMillis budget of the request
+     * @return how the request changed the mode
+     */
+    synchronized Change record(long snapshotVersion, long searchMillis, long budgetMillis) {
+        resetOnNewSnapshot(snapshotVersion);
+        if (searchMillis >= budgetMillis) {
+            fastRequests = 0;
+            if (!degraded && ++overruns >= OVERRUNS_TILL_DEGRADED) {
+                degraded = true;
+                overruns = 0;
+                return Change.DEGRADED;
+            }
+            return Change.NONE;
+        }
+        overruns = 0;
+        if (!degraded) {
+            return Change.NONE;
+        }
+        if (searchMillis * 2 >= budgetMillis) {
+            fastRequests = 0;
+        } else if (++fastRequests >= FAST_REQUESTS_TILL_RECOVERED) {
+            degraded = false;
+            fastRequests = 0;
+            return Change.RECOVERED;
+        }
+        return Change.NONE;
+    }
+
+    private void resetOnNewSnapshot(long snapshotVersion) {
+        if (this.snapshotVersion != snapshotVersion) {
+            this.snapshotVersion = snapshotVersion;
+            degraded = false;
+            overruns = 0;
+            fastRequests = 0;
+        }
+    }
+
+}
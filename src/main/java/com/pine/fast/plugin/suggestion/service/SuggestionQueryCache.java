@@ -0,0 +1,106 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import com.pine.fast.plugin.suggestion.Suggestion;
+import com.pine.fast.plugin.suggestion.SuggestionCollector;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * 最近查询结果的 LRU 缓存，用户连续输入时（cli -> clic -> click）只需过滤上一次的结果，而不必重新搜索
+ * <p>
+ * Entries are keyed by snapshot version, a scope (everything besides the query the results depend on: ancestral
+ * keys, siblings to exclude, e.t.c) & the query. A lookup for a query that extends a cached one within the same scope
+ * refines the cached value with the given refiner, which is only valid for searches whose matches can only shrink as
+ * the query grows. Entries of older snapshots are never hit & age out. Thread safe
+ *
+ * @param <V> cached value
+ * @author pine
+ */
+class SuggestionQueryCache<V> {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private final Map<Key, V> entries = new LinkedHashMap<Key, V>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    @FunctionalInterface
+    interface Refiner<V> {
+
+        /**
+         * @param cached      value cached for the shorter query
+         * @param cachedQuery shorter query, a prefix of the query
+         * @return value for the query, null if the cached value can not be refined & the query has to be searched
+         */
+        @Nullable
+        V refine(V cached, String cachedQuery, String query);
+
+    }
+
+    /**
+     * @param refiner derives the value of the query from the one of the longest cached query it extends, null if values
+     *                can not be refined & only the exact query may be reused
+     * @return value for the query, null if it has to be searched
+     */
+    @Nullable
+    synchronized V find(long snapshotVersion, Object scope, String query, @Nullable Refiner<V> refiner) {
+        V exactMatch = entries.get(new Key(snapshotVersion, scope, query));
+        if (exactMatch != null || refiner == null) {
+            return exactMatch;
+        }
+        for (int length = query.length() - 1; length > 0; length--) {
+            String shorterQuery = query.substring(0, length);
+            V shorterQueryValue = entries.get(new Key(snapshotVersion, scope, shorterQuery));
+            if (shorterQueryValue != null) {
+                V refined = refiner.refine(shorterQueryValue, shorterQuery, query);
+                if (refined != null) {
+                    entries.put(new Key(snapshotVersion, scope, query), refined);
+                }
+                return refined;
+            }
+        }
+        return null;
+    }
+
+    synchronized void put(long snapshotVersion, Object scope, String query, V value) {
+        entries.put(new Key(snapshotVersion, scope, query), value);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class Result {
+
+        private final List<Suggestion> suggestions;
+        private final boolean truncated;
+
+        /**
+         * @return result of the collector, truncated if the search was cut short by the limit or the time budget. One
+         * cut short by the time budget did not see everything & must never be cached
+         */
+        static Result of(SuggestionCollector collector) {
+            return new Result(new ArrayList<>(collector.getSuggestions()),
+                    collector.isTruncated() || collector.isOutOfTime());
+        }
+
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final long snapshotVersion;
+        private final Object scope;
+        private final String query;
+
+    }
+
+}
@@ -1,13 +1,20 @@
 package com.pine.fast.plugin.suggestion.service;
 
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.pine.fast.plugin.suggestion.completion.FileType;
+import com.pine.fast.plugin.suggestion.index.SuggestionIndexSnapshot;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.jetbrains.annotations.NotNull;
 
@@ -20,6 +27,43 @@ public interface SuggestionService {
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     boolean canProvideSuggestions(Project project, Module module);
 
+    /**
+     * Starts building the search index as a cancellable background task, if not already built/being built. Does nothing
+     * once a build failed, see {@link #reloadIndex(Project)}
+     *
+     * @param project project the task is shown in
+     */
+    void buildIndexInBackground(Project project);
+
+    /**
+     * Rebuilds the search index in the background & swaps it in once ready. Completions in flight keep using the
+     * previous snapshot. Also retries a build that failed
+     *
+     * @param project project the task is shown in
+     */
+    void reloadIndex(Project project);
+
+    /**
+     * Applies the changes of custom metadata files incrementally, only the entries of the given files are added,
+     * replaced or removed. Runs in the background, completions in flight keep using the previous snapshot
+     *
+     * @param project project the task is shown in
+     * @param paths   custom metadata files or directories that got created, modified or deleted
+     */
+    void reloadCustomMetadata(Project project, Collection<String> paths);
+
+    /**
+     * @return future that completes with the first snapshot once the search index is ready to be queried, or
+     * exceptionally if the build failed
+     */
+    @NotNull
+    CompletableFuture<SuggestionIndexSnapshot> getIndexReadyFuture();
+
+    /**
+     * @return true if the search index is built & suggestions can be served without blocking
+     */
+    boolean isIndexReady();
+
     /**
      * @param project                       project to which these suggestions should be shown
      * @param module                        module to which these suggestions should be shown
@@ -33,11 +77,49 @@ public interface SuggestionService {
      *                                      for this would be `s.a`
      * @param siblingsToExclude             siblings to exclude from search
      * @return results matching query string (without the containerElementsLeafToRoot). In the above example the values
-     * would be `simple.acknowledge-mode` & `simple.auto-startup`
+     * would be `simple.acknowledge-mode` & `simple.auto-startup`. Null if nothing matches or the index is still being
+     * built (see {@link #isIndexReady()})
+     */
+    @Nullable
+    default List<LookupElementBuilder> findSuggestionsForQueryPrefix(Project project, Module module,
+                                                                     FileType fileType, PsiElement element, @Nullable List<String> ancestralKeys,
+                                                                     String queryWithDotDelimitedPrefixes, String pre, @Nullable Set<String> siblingsToExclude) {
+        List<LookupElementBuilder> suggestions = new ArrayList<>();
+        findSuggestionsForQueryPrefix(project, module, fileType, element, ancestralKeys, queryWithDotDelimitedPrefixes,
+                pre, siblingsToExclude, null, suggestions::add);
+        return suggestions.isEmpty() ? null : suggestions;
+    }
+
+    /**
+     * Streaming variant of {@link #findSuggestionsForQueryPrefix(Project, Module, FileType, PsiElement, List, String,
+     * String, Set)}: results are pushed to the sink as soon as they are found, so that the caller can show the first
+     * batch while the search is still running. A query seen before is answered from the cache at once. Otherwise the
+     * keys below the ancestral keys (or below the nodes matching the first query segment when it matches no root) come
+     * first, then the roots & simple key:value entries of the top level in name order. Big top levels are searched in
+     * parallel, their results are pushed in name order as the ranges complete. Every suggestion is pushed once
+     *
+     * @param prefixMatcher matcher the caller filters the results with, if any. Suggestions it would reject are skipped
+     *                      during the search, before they are built, & do not count towards the maximum number of
+     *                      suggestions. Its prefix is expected to derive from the query
+     * @param sink          receives the results, on the calling thread
+     * @return number of results pushed, 0 if nothing matches or the index is still being built
+     */
+    int findSuggestionsForQueryPrefix(Project project, Module module, FileType fileType, PsiElement element,
+                                      @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes, String pre,
+                                      @Nullable Set<String> siblingsToExclude, @Nullable PrefixMatcher prefixMatcher,
+                                      Consumer<LookupElementBuilder> sink);
+
+    /**
+     * Typo tolerant variant of {@link #findSuggestionsForQueryPrefix}, only meant to be used when that one found nothing
+     * as it is more expensive. Keys are matched against the query by edit distance (adjacent transpositions counting
+     * as a single edit), values are not searched
+     *
+     * @return results ordered by edit distance, closer ones prioritised. Null if nothing is close enough or the index
+     * is still being built
      */
     @Nullable
-    List<LookupElementBuilder> findSuggestionsForQueryPrefix(Project project, Module module,
-                                                             FileType fileType, PsiElement element, @Nullable List<String> ancestralKeys,
-                                                             String queryWithDotDelimitedPrefixes, String pre,@Nullable Set<String> siblingsToExclude);
+    List<LookupElement> findFuzzySuggestionsForQueryPrefix(Project project, Module module, FileType fileType,
+                                                           @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes,
+                                                           @Nullable Set<String> siblingsToExclude);
 
 }
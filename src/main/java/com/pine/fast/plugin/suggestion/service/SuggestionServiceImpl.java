@@ -1,437 +1,824 @@
 package com.pine.fast.plugin.suggestion.service;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableList;
-import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
-import com.google.gson.GsonBuilder;
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.pine.fast.plugin.misc.GenericUtil;
+import com.pine.fast.plugin.persistent.CustomMetadataConfig;
 import com.pine.fast.plugin.persistent.SystemConfig;
+import com.pine.fast.plugin.suggestion.MatchPath;
+import com.pine.fast.plugin.suggestion.SearchBudget;
 import com.pine.fast.plugin.suggestion.Suggestion;
+import com.pine.fast.plugin.suggestion.SuggestionCollector;
 import com.pine.fast.plugin.suggestion.SuggestionNode;
 import com.pine.fast.plugin.suggestion.completion.FileType;
-import com.pine.fast.plugin.suggestion.metadata.MetadataNonPropertySuggestionNode;
-import com.pine.fast.plugin.suggestion.metadata.MetadataPropertySuggestionNode;
+import com.pine.fast.plugin.suggestion.index.AbbreviationIndex;
+import com.pine.fast.plugin.suggestion.index.IncrementalSuggestionIndex;
+import com.pine.fast.plugin.suggestion.index.SuggestionIndexCache;
+import com.pine.fast.plugin.suggestion.index.SuggestionIndexSnapshot;
+import com.pine.fast.plugin.suggestion.index.SuggestionMetadataSource;
+import com.pine.fast.plugin.suggestion.metadata.ArenaSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.FuzzyKeySearch;
 import com.pine.fast.plugin.suggestion.metadata.MetadataSuggestionNode;
-import com.pine.fast.plugin.suggestion.metadata.json.GsonPostProcessEnablingTypeFactory;
-import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadata;
-import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
 import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
-import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderType;
-import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderTypeDeserializer;
-import gnu.trove.THashMap;
 import gnu.trove.THashSet;
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import gnu.trove.TIntArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
-import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.Trie;
-import org.apache.commons.collections4.trie.PatriciaTrie;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.StopWatch;
+import org.jetbrains.annotations.NotNull;
 
 public class SuggestionServiceImpl implements SuggestionService {
 
-    private final static String MODULE_NAME = "yaml";
-    private final static String SIMPLE_NAME = "simple";
-
     private static final Logger log = Logger.getInstance(SuggestionServiceImpl.class);
+    private static final ThreadLocal<BitSet> EXCLUDED_ROOTS = ThreadLocal.withInitial(BitSet::new);
+    /**
+     * Walking a root subtree is far more expensive than checking a simple, hence the much lower threshold when the
+     * top level candidates include roots
+     */
+    private static final int PARALLEL_ROOTS_THRESHOLD = 128;
+    private static final int PARALLEL_SIMPLES_THRESHOLD = 4096;
 
     /**
-     * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens,
-     * underscores, e.t.c in the keys themselves
+     * Currently published index. Swapped atomically as a whole, readers must read it once per request. The snapshot
+     * itself is shared across projects via {@link SuggestionIndexCache}
      */
-    private final Map<String, Trie<String, MetadataSuggestionNode>> moduleNameToRootSearchIndex;
+    private final AtomicReference<SuggestionIndexSnapshot> snapshotRef = new AtomicReference<>();
 
-    SuggestionServiceImpl() {
-        moduleNameToRootSearchIndex = new THashMap<>();
-    }
+    /**
+     * Completes with the first snapshot built by the background task started at project open, or exceptionally if
+     * that build failed. Replaced when a failed build is retried
+     */
+    private volatile CompletableFuture<SuggestionIndexSnapshot> indexReadyFuture = new CompletableFuture<>();
+    /**
+     * Why the last index build failed, null if it did not. Builds are then only retried on an explicit reload or a
+     * change of the metadata, rather than on every keystroke
+     */
+    @Nullable
+    private volatile Throwable indexBuildFailure;
+    private final AtomicBoolean indexBuildRunning = new AtomicBoolean();
+    private final AtomicBoolean indexBuildRequested = new AtomicBoolean();
 
     /**
-     * 根据 逗号  分隔为数组
-     *
-     * @param element
-     * @return
+     * Custom metadata files/directories changed since the last publish
      */
-    private static String[] toSanitizedPathSegments(String element) {
-        String[] splits = element.trim().split(Suggestion.PERIOD_DELIMITER, -1);
-        for (int i = 0; i < splits.length; i++) {
-            splits[i] = SuggestionNode.sanitise(splits[i]);
-        }
-        return splits;
-    }
-
-    private static String[] toRawPathSegments(String element) {
-        String[] splits = element.trim().split(Suggestion.PERIOD_DELIMITER, -1);
-        for (int i = 0; i < splits.length; i++) {
-            splits[i] = splits[i].trim();
-        }
-        return splits;
-    }
-
-    private void initSearchIndex(Module module) {
-        Trie<String, MetadataSuggestionNode> rootSearchIndex = moduleNameToRootSearchIndex.get(MODULE_NAME);
-        Trie<String, MetadataSuggestionNode> simpleSearchIndex = moduleNameToRootSearchIndex.get(SIMPLE_NAME);
-
-        if (rootSearchIndex == null) {
-            rootSearchIndex = new PatriciaTrie<>();
-            simpleSearchIndex = new PatriciaTrie<>();
-            moduleNameToRootSearchIndex.put(MODULE_NAME, rootSearchIndex);
-            moduleNameToRootSearchIndex.put(SIMPLE_NAME, simpleSearchIndex);
-
-            try {
-                // TODO: pine 2021/3/31 通过本地配置 + 外部配置实现
-                InputStream inputStream = getClass().getResourceAsStream("/suggestion.json");
-                GsonBuilder gsonBuilder = new GsonBuilder();
-                // register custom mapper adapters
-                gsonBuilder.registerTypeAdapter(SpringConfigurationMetadataValueProviderType.class,
-                        new SpringConfigurationMetadataValueProviderTypeDeserializer());
-                gsonBuilder.registerTypeAdapterFactory(new GsonPostProcessEnablingTypeFactory());
-                SpringConfigurationMetadata springConfigurationMetadata = gsonBuilder.create()
-                        .fromJson(new BufferedReader(new InputStreamReader(inputStream, UTF_8)),
-                                SpringConfigurationMetadata.class);
-
-                addPropertiesToIndex(module, rootSearchIndex, springConfigurationMetadata, "test");
-                addHintsToIndex(module, rootSearchIndex, springConfigurationMetadata, "hintTest");
-                addSimplesToIndex(simpleSearchIndex, springConfigurationMetadata, "simpleTest");
-                System.out.println(rootSearchIndex);
-            } catch (Exception e) {
-                log.error("初始化搜索索引失败");
-            }
+    private final Set<String> pendingCustomMetadataPaths = ConcurrentHashMap.newKeySet();
+    /**
+     * Bundled snapshot + custom metadata, only accessed by the index task. Null if no custom metadata is configured
+     */
+    @Nullable
+    private IncrementalSuggestionIndex customMetadataIndex;
+    private final Set<String> watchedPaths = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Results of the latest queries, so that the next keystroke only needs to filter them
+     */
+    private final SuggestionQueryCache<SuggestionQueryCache.Result> queryCache = new SuggestionQueryCache<>();
+    /**
+     * Ordinals of the simples matched by the latest queries, which a longer query only needs to filter
+     */
+    private final SuggestionQueryCache<int[]> simpleMatchCache = new SuggestionQueryCache<>();
+    /**
+     * Turns the expensive search modes off while completions keep running over their time budget
+     */
+    private final SearchDegradation degradation = new SearchDegradation();
+    /**
+     * Number of suggestions the prefix matcher of the completion rejected during searches, i.e that were never built
+     */
+    private final AtomicLong rejectedSuggestionCount = new AtomicLong();
 
+    SuggestionServiceImpl() {
+    }
+
+    @Override
+    public void buildIndexInBackground(Project project) {
+        if (snapshotRef.get() == null && indexBuildFailure == null && !indexBuildRunning.get()) {
+            requestIndexBuild(project);
         }
     }
 
     @Override
-    public boolean canProvideSuggestions(Project project, Module module) {
-        return SystemConfig.getHint();
+    public void reloadIndex(Project project) {
+        if (indexBuildFailure != null) {
+            indexBuildFailure = null;
+            indexReadyFuture = new CompletableFuture<>();
+        }
+        requestIndexBuild(project);
     }
 
+    @NotNull
     @Override
-    public List<LookupElementBuilder> findSuggestionsForQueryPrefix(Project project, Module module,
-                                                                    FileType fileType, PsiElement element, @Nullable List<String> ancestralKeys,
-                                                                    String queryWithDotDelimitedPrefixes, String pre, @Nullable Set<String> siblingsToExclude) {
-        initSearchIndex(module);
+    public CompletableFuture<SuggestionIndexSnapshot> getIndexReadyFuture() {
+        return indexReadyFuture;
+    }
+
+    @Override
+    public boolean isIndexReady() {
+        return snapshotRef.get() != null;
+    }
 
-        List<LookupElementBuilder> lookupElementBuilders = doFindSuggestions(module,
-                moduleNameToRootSearchIndex.get(SIMPLE_NAME), fileType, pre);
+    @Override
+    public void reloadCustomMetadata(Project project, Collection<String> paths) {
+        pendingCustomMetadataPaths.addAll(paths);
+        startIndexTask(project);
+    }
 
-        List<LookupElementBuilder> lookupElementBuilder = doFindSuggestionsForQueryPrefix(module,
-                moduleNameToRootSearchIndex.get(MODULE_NAME), fileType, element, ancestralKeys,
-                queryWithDotDelimitedPrefixes, siblingsToExclude);
+    private void requestIndexBuild(Project project) {
+        indexBuildRequested.set(true);
+        startIndexTask(project);
+    }
 
-        if (CollectionUtils.isEmpty(lookupElementBuilders)) {
-            return lookupElementBuilder;
+    /**
+     * Single writer for the index. Requests arriving while the task runs are picked up by the same task
+     */
+    private void startIndexTask(Project project) {
+        if (!indexBuildRunning.compareAndSet(false, true)) {
+            // the running task picks up the request once it is done with the current build
+            return;
         }
-        if (CollectionUtils.isEmpty(lookupElementBuilder)) {
-            return lookupElementBuilders;
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Fast Yaml: 加载提示索引", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                while (hasPendingIndexWork()) {
+                    StopWatch timer = new StopWatch();
+                    timer.start();
+                    SuggestionIndexSnapshot snapshot;
+                    if (indexBuildRequested.getAndSet(false)) {
+                        // a full build reads all custom metadata files anyway
+                        pendingCustomMetadataPaths.clear();
+                        snapshot = buildIndex(project);
+                    } else {
+                        snapshot = applyCustomMetadataChanges(project);
+                    }
+                    if (snapshot == null) {
+                        continue;
+                    }
+                    snapshotRef.set(snapshot);
+                    indexReadyFuture.complete(snapshot);
+                    timer.stop();
+                    debug(() -> log.debug("Index snapshot " + snapshot.getVersion() + " built in " + timer.toString()));
+                }
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                indexBuildFailure = error;
+                indexReadyFuture.completeExceptionally(error);
+                log.warn("初始化搜索索引失败，重新加载或修改自定义配置后重试", error);
+            }
+
+            @Override
+            public void onFinished() {
+                indexBuildRunning.set(false);
+                if (hasPendingIndexWork()) {
+                    startIndexTask(project);
+                }
+            }
+        });
+    }
+
+    private boolean hasPendingIndexWork() {
+        return indexBuildRequested.get() || (snapshotRef.get() != null && !pendingCustomMetadataPaths.isEmpty());
+    }
+
+    private SuggestionIndexSnapshot buildIndex(Project project) {
+        SuggestionIndexSnapshot bundled;
+        try {
+            bundled = SuggestionIndexCache.getInstance().getBundledSnapshot();
+        } catch (IOException e) {
+            throw new IllegalStateException("初始化搜索索引失败", e);
+        }
+        List<String> directories = CustomMetadataConfig.getDirectories(project);
+        if (directories.isEmpty()) {
+            customMetadataIndex = null;
+            return bundled;
         }
-        lookupElementBuilders.addAll(lookupElementBuilder);
-        return lookupElementBuilders;
+        customMetadataIndex = new IncrementalSuggestionIndex(bundled);
+        for (String directory : directories) {
+            watch(directory);
+            applyCustomMetadataPath(directory);
+        }
+        return customMetadataIndex.publish();
+    }
 
+    /**
+     * Applies only the files that changed, the rest of the index is shared with the current snapshot
+     *
+     * @return new snapshot, null if nothing changed
+     */
+    @Nullable
+    private SuggestionIndexSnapshot applyCustomMetadataChanges(Project project) {
+        if (customMetadataIndex == null) {
+            customMetadataIndex = new IncrementalSuggestionIndex(snapshotRef.get());
+        }
+        boolean changed = false;
+        for (String path : drain(pendingCustomMetadataPaths)) {
+            if (CustomMetadataConfig.getDirectories(project).contains(path)) {
+                // newly configured directory
+                watch(path);
+            }
+            if (CustomMetadataConfig.isWithinDirectories(project, path)) {
+                changed |= applyCustomMetadataPath(path);
+            }
+        }
+        return changed ? customMetadataIndex.publish() : null;
     }
 
-    private List<LookupElementBuilder> doFindSuggestions(Module module,
-                                                         Trie<String, MetadataSuggestionNode> rootSearchIndex, FileType fileType, String queryWithDotDelimitedPrefixes) {
-        debug(() -> log.debug("Search requested for " + queryWithDotDelimitedPrefixes));
-        StopWatch timer = new StopWatch();
-        timer.start();
+    /**
+     * @param path file or directory that got created, modified or deleted
+     * @return true if the index changed
+     */
+    private boolean applyCustomMetadataPath(String path) {
+        assert customMetadataIndex != null;
+        boolean changed = false;
+        Path filePath = Paths.get(FileUtil.toSystemDependentName(path));
+        if (Files.isDirectory(filePath)) {
+            try (Stream<Path> files = Files.walk(filePath)) {
+                for (Path file : files.filter(this::isMetadataFile).collect(toList())) {
+                    changed |= applyCustomMetadataFile(file);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to list custom metadata under " + path, e);
+            }
+        } else if (isMetadataFile(filePath)) {
+            changed = applyCustomMetadataFile(filePath);
+        } else {
+            // deleted file or directory, drop whatever was loaded from it
+            for (String ref : new ArrayList<>(customMetadataIndex.getSourceRefs())) {
+                if (FileUtil.isAncestor(path, ref, false)) {
+                    changed |= customMetadataIndex.removeSource(ref);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean applyCustomMetadataFile(Path file) {
+        assert customMetadataIndex != null;
+        String ref = FileUtil.toSystemIndependentName(file.toString());
         try {
-            // 简单匹配只需要对顶层进行查询
-            Set<Suggestion> suggestions = doFindSuggestionsForQueryPrefix2(module, fileType, rootSearchIndex.values(), queryWithDotDelimitedPrefixes);
-            if (suggestions != null) {
-                return toLookupElementBuilders(suggestions);
+            return customMetadataIndex.applySource(new SuggestionMetadataSource(ref, Files.readAllBytes(file), false));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // keep the entries loaded from the previous content, the file is most likely being edited
+            log.warn("Failed to load custom metadata " + ref, e);
+            return false;
+        }
+    }
+
+    private boolean isMetadataFile(Path path) {
+        return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".json");
+    }
+
+    /**
+     * VFS only reports changes for files it knows about, so make sure the directory is refreshed & watched for
+     * external changes too
+     */
+    private void watch(String path) {
+        if (watchedPaths.add(path)) {
+            LocalFileSystem.getInstance().addRootToWatch(path, true);
+            VirtualFile file = LocalFileSystem.getInstance().refreshAndFindFileByPath(path);
+            if (file != null) {
+                VfsUtil.markDirtyAndRefresh(true, true, true, file);
             }
-            return null;
-        } finally {
-            timer.stop();
-            debug(() -> log.debug("Search took " + timer.toString()));
         }
+    }
 
+    private static List<String> drain(Set<String> paths) {
+        List<String> drained = new ArrayList<>();
+        Iterator<String> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
 
+    @Override
+    public boolean canProvideSuggestions(Project project, Module module) {
+        return SystemConfig.getHint();
+    }
+
+    @Override
+    public int findSuggestionsForQueryPrefix(Project project, Module module, FileType fileType, PsiElement element,
+                                             @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes, String pre,
+                                             @Nullable Set<String> siblingsToExclude, @Nullable PrefixMatcher prefixMatcher,
+                                             Consumer<LookupElementBuilder> sink) {
+        // never block the completion thread, the caller is expected to show a loading hint instead
+        SuggestionIndexSnapshot snapshot = snapshotRef.get();
+        if (snapshot == null) {
+            buildIndexInBackground(project);
+            return 0;
+        }
+
+        // 层级属性的前缀搜索与简单属性的 contains 搜索共用同一个收集器，收集器负责去重 & 限制总数，
+        // 收集满或时间预算用完后立即停止搜索，每接受一个建议就立即推送给 sink，不必等搜索结束；
+        // 补全框架会丢弃前缀匹配器不接受的建议，所以搜索时就先过滤掉，这些建议既不构建也不占用上限
+        int maxSuggestions = SystemConfig.getMaxSuggestions();
+        LookupStringMatcher filter = prefixMatcher != null ? new LookupStringMatcher(prefixMatcher) : null;
+        SearchBudget budget = SearchBudget.ofMillis(SystemConfig.getCompletionBudgetMillis());
+        // the budget is for the search, building the lookup elements & the caller adding them is not part of it
+        Consumer<Suggestion> suggestionSink = suggestion -> {
+            long start = System.nanoTime();
+            sink.accept(suggestion.newLookupElement());
+            budget.exclude(System.nanoTime() - start);
+        };
+        long version = snapshot.getVersion();
+        boolean degradedSearch = degradation.isDegraded(version);
+        // deep search & deprecated shadowing make the search non monotonic, only an identical query is reused here. The
+        // simples matched by a shorter query are refined on their own (see doFindSuggestionsForTopLevel). Cached suggestions
+        // already went through the prefix matcher, so the matcher is part of the scope
+        List<Object> scope = asList(module.getName(), fileType, maxSuggestions, degradedSearch, ancestralKeys,
+                siblingsToExclude, pre, filter != null ? filter.getScope() : null);
+        SuggestionQueryCache.Result result = queryCache.find(version, scope, queryWithDotDelimitedPrefixes, null);
+        SuggestionCollector collector;
+        if (result == null) {
+            collector = new SuggestionCollector(maxSuggestions, budget, degradedSearch, suggestionSink, filter);
+            doFindSuggestionsForQueryPrefix(module, snapshot, fileType, element, ancestralKeys,
+                    queryWithDotDelimitedPrefixes, pre, siblingsToExclude, collector);
+            result = SuggestionQueryCache.Result.of(collector);
+            if (!collector.isOutOfTime()) {
+                queryCache.put(version, scope, queryWithDotDelimitedPrefixes, result);
+            }
+            recordSearchTime(queryWithDotDelimitedPrefixes, snapshot, budget);
+        } else {
+            collector = new SuggestionCollector(maxSuggestions, SearchBudget.UNLIMITED, false, suggestionSink, filter);
+            collector.addAll(result.getSuggestions());
+        }
+
+        if (collector.isTruncated() || result.isTruncated()) {
+            debug(() -> log.debug("Search stopped after " + collector.getLimit() + " suggestions"));
+        }
+        int rejectedCount = collector.getRejectedCount();
+        if (rejectedCount != 0) {
+            long totalRejectedCount = rejectedSuggestionCount.addAndGet(rejectedCount);
+            debug(() -> log.debug("Prefix matcher rejected " + rejectedCount + " suggestions before they were built, "
+                    + totalRejectedCount + " in this session"));
+        }
+        return collector.getSuggestions().size();
+    }
+
+    /**
+     * Records how long a completion spent searching, which may turn the expensive search modes off or back on
+     */
+    private void recordSearchTime(String query, SuggestionIndexSnapshot snapshot, SearchBudget budget) {
+        long searchMillis = budget.getElapsedMillis();
+        long budgetMillis = SystemConfig.getCompletionBudgetMillis();
+        switch (degradation.record(snapshot.getVersion(), searchMillis, budgetMillis)) {
+            case DEGRADED:
+                log.warn("Completion of `" + query + "` took " + searchMillis + "ms, the "
+                        + SearchDegradation.OVERRUNS_TILL_DEGRADED + "th in a row over the budget of " + budgetMillis
+                        + "ms. Contains, deep & fuzzy search are off till completions are fast again or the index"
+                        + " changes");
+                break;
+            case RECOVERED:
+                log.info("Completions are within their budget again, contains, deep & fuzzy search are back on");
+                break;
+            default:
+                break;
+        }
     }
 
-    private List<LookupElementBuilder> doFindSuggestionsForQueryPrefix(Module module,
-                                                                       Trie<String, MetadataSuggestionNode> rootSearchIndex, FileType fileType, PsiElement element,
-                                                                       @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes,
-                                                                       @Nullable Set<String> siblingsToExclude) {
+    /**
+     * Searches the hierarchical properties by path prefix & the simples by contains/abbreviation in a single pass over
+     * the top level entries. Below the top level, ancestral keys & segment index matches are searched first
+     *
+     * @param simpleQuery query the simples are matched against
+     */
+    private void doFindSuggestionsForQueryPrefix(Module module,
+                                                 SuggestionIndexSnapshot snapshot, FileType fileType, PsiElement element,
+                                                 @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes,
+                                                 String simpleQuery, @Nullable Set<String> siblingsToExclude,
+                                                 SuggestionCollector collector) {
         debug(() -> log.debug("Search requested for " + queryWithDotDelimitedPrefixes));
         StopWatch timer = new StopWatch();
         timer.start();
         try {
-            String[] querySegmentPrefixes = toSanitizedPathSegments(queryWithDotDelimitedPrefixes);
-            Set<Suggestion> suggestions = null;
+            // the roots to walk in the top level pass, none unless the first query segment matches a root
+            int rootFrom = 0;
+            int rootTo = 0;
+            BitSet excludedRoots = null;
+            String[] querySegmentPrefixes = GenericUtil.toSanitizedPathSegments(queryWithDotDelimitedPrefixes);
             if (ancestralKeys != null) {
-                String[] ancestralKeySegments =
-                        ancestralKeys.stream().flatMap(key -> stream(toRawPathSegments(key)))
-                                .toArray(String[]::new);
-                MetadataSuggestionNode rootNode = rootSearchIndex.get(SuggestionNode.sanitise(ancestralKeySegments[0]));
-                if (rootNode != null) {
-                    List<SuggestionNode> matchesRootToDeepest;
-                    SuggestionNode startSearchFrom = null;
-                    if (ancestralKeySegments.length > 1) {
-                        String[] sanitisedAncestralPathSegments =
-                                stream(ancestralKeySegments).map(SuggestionNode::sanitise).toArray(String[]::new);
-                        matchesRootToDeepest = rootNode
-                                .findDeepestSuggestionNode(module, GenericUtil.modifiableList(rootNode),
-                                        sanitisedAncestralPathSegments, 1);
-                        if (matchesRootToDeepest != null && matchesRootToDeepest.size() != 0) {
-                            startSearchFrom = matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
-                        }
+                List<SuggestionNode> matchesRootToDeepest =
+                        findMatchesRootToDeepest(module, snapshot, ancestralKeys);
+                if (matchesRootToDeepest != null) {
+                    SuggestionNode startSearchFrom = matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
+                    // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
+                    if (startSearchFrom.isLeaf(module)) {
+                        collector.addAll(startSearchFrom.findValueSuggestionsForPrefix(module, fileType,
+                                unmodifiableList(matchesRootToDeepest),
+                                SuggestionNode.sanitise(GenericUtil.truncateIdeaDummyIdentifier(element.getText())), siblingsToExclude));
                     } else {
-                        startSearchFrom = rootNode;
-                        matchesRootToDeepest = singletonList(rootNode);
-                    }
-
-                    if (startSearchFrom != null) {
-                        // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
-                        if (startSearchFrom.isLeaf(module)) {
-                            suggestions = startSearchFrom.findValueSuggestionsForPrefix(module, fileType,
-                                    unmodifiableList(matchesRootToDeepest),
-                                    SuggestionNode.sanitise(GenericUtil.truncateIdeaDummyIdentifier(element.getText())), siblingsToExclude);
-                        } else {
-                            suggestions = startSearchFrom.findKeySuggestionsForQueryPrefix(module, fileType,
-                                    unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
-                                    querySegmentPrefixes, 0, siblingsToExclude);
-                        }
+                        startSearchFrom.collectKeySuggestionsForQueryPrefix(module, fileType,
+                                unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
+                                querySegmentPrefixes, 0, siblingsToExclude, collector);
                     }
                 }
             } else {
                 String rootQuerySegmentPrefix = querySegmentPrefixes[0];
-                SortedMap<String, MetadataSuggestionNode> topLevelQueryResults =
-                        rootSearchIndex.prefixMap(rootQuerySegmentPrefix);
+                int rangeStart = snapshot.rangeStart(rootQuerySegmentPrefix);
+                int rangeEnd = snapshot.rangeEnd(rangeStart, rootQuerySegmentPrefix);
+                excludedRoots = excludedRoots(snapshot, siblingsToExclude);
 
-                Collection<MetadataSuggestionNode> childNodes;
-                int querySegmentPrefixStartIndex;
-
-                // 如果在顶层没有找到匹配的key，再对儿子级进行匹配查询
-                if (topLevelQueryResults == null || topLevelQueryResults.size() == 0) {
-                    childNodes = rootSearchIndex.values();
-                    querySegmentPrefixStartIndex = 0;
+                if (snapshot.hasRoot(rangeStart, rangeEnd)) {
+                    rootFrom = rangeStart;
+                    rootTo = rangeEnd;
                 } else {
-                    childNodes = topLevelQueryResults.values();
-                    querySegmentPrefixStartIndex = 1;
+                    // 如果在顶层没有找到匹配的key，再对儿子级进行匹配查询，通过路径段倒排索引直接定位。
+                    // Every node of the tree is indexed, properties never resolve children from class metadata
+                    doFindSuggestionsForSegment(module, fileType, snapshot,
+                            snapshot.getSegmentIndex().findPathsForPrefix(rootQuerySegmentPrefix), querySegmentPrefixes,
+                            excludedRoots, collector);
                 }
-
-                Collection<MetadataSuggestionNode> nodesToSearchAgainst;
-                if (siblingsToExclude != null) {
-                    Set<MetadataSuggestionNode> nodesToExclude = siblingsToExclude.stream()
-                            .flatMap(exclude -> rootSearchIndex.prefixMap(exclude).values().stream())
-                            .collect(toSet());
-                    nodesToSearchAgainst =
-                            childNodes.stream().filter(node -> !nodesToExclude.contains(node)).collect(toList());
-                } else {
-                    nodesToSearchAgainst = childNodes;
-                }
-
-                suggestions = doFindSuggestionsForQueryPrefix(module, fileType, nodesToSearchAgainst,
-                        querySegmentPrefixes, querySegmentPrefixStartIndex);
             }
-
-            if (suggestions != null) {
-                return toLookupElementBuilders(suggestions);
-            }
-            return null;
+            doFindSuggestionsForTopLevel(module, fileType, snapshot, rootFrom, rootTo, excludedRoots,
+                    querySegmentPrefixes, simpleQuery, collector);
+        } catch (ProcessCanceledException e) {
+            // the partial result must neither be cached nor shown, let the completion framework handle it
+            throw e;
         } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+            log.warn("Search for `" + queryWithDotDelimitedPrefixes + "` failed", e);
         } finally {
             timer.stop();
             debug(() -> log.debug("Search took " + timer.toString()));
         }
     }
 
-    private Set<Suggestion> doFindSuggestionsForQueryPrefix2(Module module, FileType fileType,
-                                                             Collection<MetadataSuggestionNode> nodesToSearchWithin, String queryWithDotDelimitedPrefixes) {
-        Set<Suggestion> suggestions = null;
-        for (MetadataSuggestionNode suggestionNode : nodesToSearchWithin) {
-            Set<Suggestion> matchedSuggestions = suggestionNode
-                    .findKeySuggestionsForQueryPrefix(module, fileType, GenericUtil.modifiableList(suggestionNode), 0,
-                            queryWithDotDelimitedPrefixes);
+    /**
+     * @return ordinals of the roots matching any of the siblings to exclude, null if there are none. The bitset is reused
+     * by every search of the current thread
+     */
+    @Nullable
+    private BitSet excludedRoots(SuggestionIndexSnapshot snapshot, @Nullable Set<String> siblingsToExclude) {
+        if (siblingsToExclude == null || siblingsToExclude.isEmpty()) {
+            return null;
+        }
+        BitSet excludedRoots = EXCLUDED_ROOTS.get();
+        excludedRoots.clear();
+        return snapshot.markRootsStartingWith(siblingsToExclude, excludedRoots) ? excludedRoots : null;
+    }
+
+    private boolean isExcludedRoot(SuggestionIndexSnapshot snapshot, @Nullable BitSet excludedRoots,
+                                   SuggestionNode root) {
+        if (excludedRoots == null) {
+            return false;
+        }
+        int ordinal = snapshot.rootOrdinal(root.getName());
+        return ordinal != -1 && excludedRoots.get(ordinal);
+    }
 
-            if (matchedSuggestions != null) {
-                if (suggestions == null) {
-                    suggestions = new THashSet<>();
-                }
-                suggestions.addAll(matchedSuggestions);
+    /**
+     * Equivalent of searching all roots from the first query segment, starting right at the nodes whose name matches
+     * it. A match under another match that already produced suggestions is left out, as it would have been shadowed
+     * while walking the tree
+     *
+     * @param matchesRootTillSegment paths from root till the nodes matching the first query segment, shallower first
+     */
+    private void doFindSuggestionsForSegment(Module module, FileType fileType, SuggestionIndexSnapshot snapshot,
+                                             List<List<SuggestionNode>> matchesRootTillSegment, String[] querySegmentPrefixes,
+                                             @Nullable BitSet excludedRoots, SuggestionCollector collector) {
+        Set<SuggestionNode> nodesWithSuggestions = new THashSet<>();
+        for (List<SuggestionNode> matchesRootTillMe : matchesRootTillSegment) {
+            if (collector.isFull()) {
+                return;
+            }
+            ProgressManager.checkCanceled();
+            if (isExcludedRoot(snapshot, excludedRoots, matchesRootTillMe.get(0))
+                    || matchesRootTillMe.stream().anyMatch(nodesWithSuggestions::contains)) {
+                continue;
+            }
+            SuggestionNode node = matchesRootTillMe.get(matchesRootTillMe.size() - 1);
+            int offeredCount = collector.getOfferedCount();
+            node.collectKeySuggestionsForQueryPrefix(module, fileType,
+                    unmodifiableList(matchesRootTillMe), 0, querySegmentPrefixes, 1, null, collector);
+            if (collector.getOfferedCount() != offeredCount) {
+                nodesWithSuggestions.add(node);
             }
         }
-        return suggestions;
     }
 
+    /**
+     * @return path from root till the node the ancestral keys lead to, null if they do not lead anywhere
+     */
     @Nullable
-    private Set<Suggestion> doFindSuggestionsForQueryPrefix(Module module, FileType fileType,
-                                                            Collection<MetadataSuggestionNode> nodesToSearchWithin, String[] querySegmentPrefixes,
-                                                            int querySegmentPrefixStartIndex) {
-        Set<Suggestion> suggestions = null;
-        for (MetadataSuggestionNode suggestionNode : nodesToSearchWithin) {
-            Set<Suggestion> matchedSuggestions = suggestionNode
-                    .findKeySuggestionsForQueryPrefix(module, fileType, GenericUtil.modifiableList(suggestionNode), 0,
-                            querySegmentPrefixes, querySegmentPrefixStartIndex);
-            if (matchedSuggestions != null) {
-                if (suggestions == null) {
-                    suggestions = new THashSet<>();
-                }
-                suggestions.addAll(matchedSuggestions);
-            }
+    private List<SuggestionNode> findMatchesRootToDeepest(Module module, SuggestionIndexSnapshot snapshot,
+                                                          List<String> ancestralKeys) {
+        String[] ancestralKeySegments =
+                ancestralKeys.stream().flatMap(key -> stream(GenericUtil.toRawPathSegments(key)))
+                        .toArray(String[]::new);
+        MetadataSuggestionNode rootNode = snapshot.getRoot(SuggestionNode.sanitise(ancestralKeySegments[0]));
+        if (rootNode == null) {
+            return null;
+        }
+        if (ancestralKeySegments.length == 1) {
+            return singletonList(rootNode);
         }
-        return suggestions;
+        String[] sanitisedAncestralPathSegments =
+                stream(ancestralKeySegments).map(SuggestionNode::sanitise).toArray(String[]::new);
+        List<SuggestionNode> matchesRootToDeepest = rootNode
+                .findDeepestSuggestionNode(module, GenericUtil.modifiableList(rootNode),
+                        sanitisedAncestralPathSegments, 1);
+        return matchesRootToDeepest != null && matchesRootToDeepest.size() != 0 ? matchesRootToDeepest : null;
     }
 
     @Nullable
-    private List<LookupElementBuilder> toLookupElementBuilders(
-            @Nullable Set<Suggestion> suggestions) {
-        if (suggestions != null) {
-            return suggestions.stream().map(Suggestion::newLookupElement).collect(toList());
-        }
-        return null;
-    }
-
-    private void addHintsToIndex(Module module, Trie<String, MetadataSuggestionNode> rootSearchIndex,
-                                 SpringConfigurationMetadata springConfigurationMetadata, String containerPath) {
-        List<SpringConfigurationMetadataHint> hints = springConfigurationMetadata.getHints();
-        if (hints != null) {
-            hints.sort(comparing(SpringConfigurationMetadataHint::getName));
-            for (SpringConfigurationMetadataHint hint : hints) {
-                String[] pathSegments = toSanitizedPathSegments(hint.getExpectedPropertyName());
-                MetadataSuggestionNode closestMetadata =
-                        findDeepestMetadataMatch(rootSearchIndex, pathSegments, true);
-                if (closestMetadata != null) {
-                    if (!closestMetadata.isProperty()) {
-                        log.warn(
-                                "Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata
-                                        .getPathFromRoot(module)
-                                        + " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to ("
-                                        + closestMetadata.getBelongsTo().stream().collect(joining(","))
-                                        + "), New hint belongs " + containerPath);
-                    } else {
-                        MetadataPropertySuggestionNode propertySuggestionNode =
-                                MetadataPropertySuggestionNode.class.cast(closestMetadata);
-                        if (hint.representsValueOfMap()) {
-                            propertySuggestionNode.getProperty().setValueHint(hint);
-                        } else {
-                            propertySuggestionNode.getProperty().setGenericOrKeyHint(hint);
-                        }
+    @Override
+    public List<LookupElement> findFuzzySuggestionsForQueryPrefix(Project project, Module module, FileType fileType,
+                                                                  @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes,
+                                                                  @Nullable Set<String> siblingsToExclude) {
+        SuggestionIndexSnapshot snapshot = snapshotRef.get();
+        if (snapshot == null || degradation.isDegraded(snapshot.getVersion())) {
+            return null;
+        }
+        debug(() -> log.debug("Fuzzy search requested for " + queryWithDotDelimitedPrefixes));
+        SearchBudget budget = SearchBudget.ofMillis(SystemConfig.getCompletionBudgetMillis());
+        StopWatch timer = new StopWatch();
+        timer.start();
+        try {
+            String query = String.join(".", GenericUtil.toSanitizedPathSegments(queryWithDotDelimitedPrefixes));
+            List<FuzzyKeySearch.Match> matches;
+            int numOfAncestors;
+            if (ancestralKeys != null) {
+                List<SuggestionNode> matchesRootToDeepest =
+                        findMatchesRootToDeepest(module, snapshot, ancestralKeys);
+                // values are matched by the exact search only
+                if (matchesRootToDeepest == null
+                        || matchesRootToDeepest.get(matchesRootToDeepest.size() - 1).isLeaf(module)) {
+                    return null;
+                }
+                numOfAncestors = matchesRootToDeepest.size();
+                matches = FuzzyKeySearch.searchChildren(matchesRootToDeepest, query, siblingsToExclude, budget);
+            } else {
+                numOfAncestors = 0;
+                matches = FuzzyKeySearch.search(emptyList(), snapshot.getTopLevelNodes(), query, siblingsToExclude,
+                        budget);
+            }
+
+            // matches are ordered by distance, a suggestion reachable from several matches keeps the closest one
+            Map<Suggestion, Integer> suggestionToDistance = new LinkedHashMap<>();
+            int maxSuggestions = SystemConfig.getMaxSuggestions();
+            for (FuzzyKeySearch.Match match : matches) {
+                if (suggestionToDistance.size() >= maxSuggestions || budget.isExhausted()) {
+                    break;
+                }
+                ProgressManager.checkCanceled();
+                List<SuggestionNode> matchesRootTillMe = match.getMatchesRootTillMe();
+                SuggestionNode matchedNode = matchesRootTillMe.get(matchesRootTillMe.size() - 1);
+                if (isSimple(snapshot, matchesRootTillMe)) {
+                    // simples are displayed with their raw names, same as in the exact search
+                    ArenaSuggestionNode simple = ArenaSuggestionNode.class.cast(matchedNode);
+                    if (!simple.getProperty().isDeprecatedError()) {
+                        suggestionToDistance.putIfAbsent(
+                                simple.keySuggestion(module, fileType, matchesRootTillMe, 0, true), match.getDistance());
                     }
+                    continue;
+                }
+                Set<Suggestion> matchedSuggestions = matchedNode.findKeySuggestionsForQueryPrefix(module, fileType,
+                        unmodifiableList(matchesRootTillMe), numOfAncestors, new String[0], 0, null);
+                if (matchedSuggestions != null) {
+                    matchedSuggestions.forEach(suggestion -> suggestionToDistance.putIfAbsent(suggestion, match.getDistance()));
                 }
             }
+            recordSearchTime(queryWithDotDelimitedPrefixes, snapshot, budget);
+            if (suggestionToDistance.isEmpty()) {
+                return null;
+            }
+            return suggestionToDistance.entrySet().stream()
+                    .map(entry -> PrioritizedLookupElement.withPriority(entry.getKey().newLookupElement(), -entry.getValue()))
+                    .collect(toList());
+        } finally {
+            timer.stop();
+            debug(() -> log.debug("Fuzzy search took " + timer.toString()));
         }
     }
 
-    private void addPropertiesToIndex(Module module,
-                                      Trie<String, MetadataSuggestionNode> rootSearchIndex,
-                                      SpringConfigurationMetadata springConfigurationMetadata, String containerArchiveOrFileRef) {
-        List<SpringConfigurationMetadataProperty> properties =
-                springConfigurationMetadata.getProperties();
-        properties.sort(comparing(SpringConfigurationMetadataProperty::getName));
-        for (SpringConfigurationMetadataProperty property : properties) {
-            String[] pathSegments = toSanitizedPathSegments(property.getName());
-            String[] rawPathSegments = toRawPathSegments(property.getName());
-            MetadataSuggestionNode closestMetadata =
-                    findDeepestMetadataMatch(rootSearchIndex, pathSegments, false);
-
-            int startIndex;
-            if (closestMetadata == null) {
-                // 是否没有子节点，只有根节点存在
-                boolean onlyRootSegmentExists = pathSegments.length == 1;
-                if (onlyRootSegmentExists) {
-                    closestMetadata = MetadataPropertySuggestionNode
-                            .newInstance(rawPathSegments[0], property, null, containerArchiveOrFileRef);
-                } else {
-                    closestMetadata = MetadataNonPropertySuggestionNode
-                            .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
-                }
-                rootSearchIndex.put(pathSegments[0], closestMetadata);
+    /**
+     * @return true if the path leads to a simple, rather than to a root of the hierarchical properties
+     */
+    private static boolean isSimple(SuggestionIndexSnapshot snapshot, List<SuggestionNode> matchesRootTillMe) {
+        if (matchesRootTillMe.size() != 1 || !(matchesRootTillMe.get(0) instanceof ArenaSuggestionNode)) {
+            return false;
+        }
+        ArenaSuggestionNode node = ArenaSuggestionNode.class.cast(matchesRootTillMe.get(0));
+        SpringConfigurationMetadataProperty property = node.getProperty();
+        // a root & a simple may share a name, nodes are equal only if they are the same entry of the same arena
+        return property != null && node.equals(snapshot.getSimple(property.getName()));
+    }
 
-                // 因为我们已经处理了根级项目，所以让addChildren从pathSegments的索引1开始
-                startIndex = 1;
-            } else {
-                startIndex = closestMetadata.numOfHopesToRoot() + 1;
+    /**
+     * 顶层的单次遍历：前缀范围内的根节点按 query segment 向下查找，简单属性做 contains 匹配（降级后只做前缀匹配）与驼峰缩写匹配，
+     * 如 mtewo -> moveToElementWithOffset
+     * <p>
+     * The candidates of both kinds are merged into one list of ordinals that is searched once, in parallel if there
+     * are many, each entry dispatching on its kind. Suggestions hence arrive in ordinal (name) order. Unlike the tree
+     * search, the simple matches can only shrink as the query grows. Their ordinals are cached, so that the next
+     * keystroke (cli -> clic -> click) only visits those instead of the text index candidates
+     *
+     * @param rootFrom first ordinal of the roots to walk, the range is empty if there are none
+     * @param rootTo   end of the roots to walk, exclusive
+     */
+    private void doFindSuggestionsForTopLevel(Module module, FileType fileType, SuggestionIndexSnapshot snapshot,
+                                              int rootFrom, int rootTo, @Nullable BitSet excludedRoots,
+                                              String[] querySegmentPrefixes, String simpleQuery,
+                                              SuggestionCollector collector) {
+        boolean degradedSearch = collector.isDegraded();
+        int[] cachedMatches = simpleMatchCache.find(snapshot.getVersion(), degradedSearch, simpleQuery,
+                (cached, cachedQuery, query) ->
+                        refineSimpleMatches(snapshot, cached, cachedQuery, query, degradedSearch));
+        int[] ordinals = topLevelCandidates(snapshot, rootFrom, rootTo, excludedRoots, simpleQuery, degradedSearch,
+                cachedMatches);
+        // cached simples are matches already, the others are verified & recorded for the cache. Ranges write disjoint
+        // slots, the join of the parallel search publishes them
+        boolean[] matched = cachedMatches == null ? new boolean[ordinals.length] : null;
+        int threshold = rootFrom < rootTo ? PARALLEL_ROOTS_THRESHOLD : PARALLEL_SIMPLES_THRESHOLD;
+        ParallelSearch.search(0, ordinals.length, threshold, collector, (from, to, rangeCollector) -> {
+            for (int i = from; i < to; i++) {
+                // once full, only the simples are still matched for the cache
+                if (rangeCollector.isOutOfTime() || (matched == null && rangeCollector.isFull())) {
+                    return;
+                }
+                ProgressManager.checkCanceled();
+                int ordinal = ordinals[i];
+                MetadataSuggestionNode node = snapshot.getTopLevel(ordinal);
+                if (snapshot.isSimple(ordinal)) {
+                    if (matched != null) {
+                        matched[i] = isSimpleMatch(snapshot, ordinal, simpleQuery, degradedSearch)
+                                || isAbbreviationMatch(snapshot, ordinal, simpleQuery);
+                        if (!matched[i]) {
+                            continue;
+                        }
+                    }
+                    if (!rangeCollector.isFull()) {
+                        ArenaSuggestionNode.class.cast(node).collectKeySuggestion(module, fileType,
+                                MatchPath.of(node), 0, true, rangeCollector);
+                    }
+                } else if (!rangeCollector.isFull()) {
+                    node.collectKeySuggestionsForQueryPrefix(module, fileType, MatchPath.of(node), 0,
+                            querySegmentPrefixes, 1, null, rangeCollector);
+                }
             }
+        });
 
-            boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
-
-            if (haveMoreSegmentsLeft) {
-                if (!closestMetadata.isProperty()) {
-                    MetadataNonPropertySuggestionNode.class.cast(closestMetadata)
-                            .addChildren(property, rawPathSegments, startIndex, containerArchiveOrFileRef);
-                } else {
-                    log.warn("Detected conflict between a new group & existing property for suggestion path "
-                            + closestMetadata.getPathFromRoot(module)
-                            + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
-                            .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
-                            + containerArchiveOrFileRef);
+        // matches cut short by the time budget are incomplete
+        if (matched != null && !collector.isOutOfTime()) {
+            TIntArrayList matches = new TIntArrayList();
+            for (int i = 0; i < ordinals.length; i++) {
+                if (matched[i]) {
+                    matches.add(ordinals[i]);
                 }
-            } else {
-                if (!closestMetadata.isProperty()) {
-                    log.warn(
-                            "Detected conflict between a new metadata property & existing non property node for suggestion path "
-                                    + closestMetadata.getPathFromRoot(module)
-                                    + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
-                                    .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
-                                    + containerArchiveOrFileRef);
-                } else {
-                    closestMetadata.addRefCascadeTillRoot(containerArchiveOrFileRef);
-                    log.debug("Detected a duplicate metadata property for suggestion path " + closestMetadata
-                            .getPathFromRoot(module) + ". Ignoring property. Existing property belongs to ("
-                            + closestMetadata.getBelongsTo().stream().collect(joining(","))
-                            + "), New property belongs to " + containerArchiveOrFileRef);
+            }
+            simpleMatchCache.put(snapshot.getVersion(), degradedSearch, simpleQuery, matches.toNativeArray());
+        }
+    }
+
+    /**
+     * @param cachedMatches matched simples of the query, null if not cached
+     * @return sorted ordinals of the roots {@code [rootFrom, rootTo)} that are not excluded & of the simples that may
+     * match: the cached matches, otherwise the trigram candidates (the prefix range once degraded, all if the index
+     * has no candidates) together with the abbreviation matches
+     */
+    private static int[] topLevelCandidates(SuggestionIndexSnapshot snapshot, int rootFrom, int rootTo,
+                                            @Nullable BitSet excludedRoots, String simpleQuery, boolean degradedSearch,
+                                            @Nullable int[] cachedMatches) {
+        BitSet candidates = new BitSet(snapshot.getTopLevelCount());
+        for (int ordinal = rootFrom; ordinal < rootTo; ordinal++) {
+            if (!snapshot.isSimple(ordinal) && (excludedRoots == null || !excludedRoots.get(ordinal))) {
+                candidates.set(ordinal);
+            }
+        }
+        if (cachedMatches != null) {
+            setSimples(snapshot, candidates, cachedMatches);
+            return candidates.stream().toArray();
+        }
+        int[] containsCandidates =
+                degradedSearch ? null : snapshot.getSimpleContainsIndex().findCandidates(simpleQuery);
+        if (containsCandidates != null) {
+            setSimples(snapshot, candidates, containsCandidates);
+        } else {
+            int rangeStart = degradedSearch ? snapshot.rangeStart(simpleQuery) : 0;
+            int rangeEnd = degradedSearch ? snapshot.rangeEnd(rangeStart, simpleQuery) : snapshot.getTopLevelCount();
+            for (int ordinal = rangeStart; ordinal < rangeEnd; ordinal++) {
+                if (snapshot.isSimple(ordinal)) {
+                    candidates.set(ordinal);
                 }
             }
         }
+        setSimples(snapshot, candidates, snapshot.getSimpleAbbreviationIndex().find(simpleQuery).toNativeArray());
+        return candidates.stream().toArray();
     }
 
+    private static void setSimples(SuggestionIndexSnapshot snapshot, BitSet candidates, int[] ordinals) {
+        for (int ordinal : ordinals) {
+            if (snapshot.isSimple(ordinal)) {
+                candidates.set(ordinal);
+            }
+        }
+    }
 
-    private void addSimplesToIndex(
-            Trie<String, MetadataSuggestionNode> rootSearchIndex,
-            SpringConfigurationMetadata springConfigurationMetadata, String containerArchiveOrFileRef) {
-        List<SpringConfigurationMetadataProperty> simples =
-                springConfigurationMetadata.getSimples();
-        simples.sort(comparing(SpringConfigurationMetadataProperty::getName));
-        for (SpringConfigurationMetadataProperty simple : simples) {
-            String originalName = StringUtils.isEmpty(simple.getOriginalName()) ? simple.getName() : simple.getOriginalName();
-            MetadataSuggestionNode closestMetadata = MetadataPropertySuggestionNode
-                    .newInstance(simple.getName(), originalName, simple, null, containerArchiveOrFileRef);
-            rootSearchIndex.put(simple.getName(), closestMetadata);
+    /**
+     * @return the matches of the cached query that also match the longer query, null if the cached query is too short
+     * for the abbreviation index, as the longer query may then match abbreviations it never saw
+     */
+    @Nullable
+    private static int[] refineSimpleMatches(SuggestionIndexSnapshot snapshot, int[] cached, String cachedQuery,
+                                             String query, boolean degraded) {
+        if (!AbbreviationIndex.isAbbreviation(cachedQuery)) {
+            return null;
         }
+        TIntArrayList refined = new TIntArrayList();
+        for (int ordinal : cached) {
+            if (isSimpleMatch(snapshot, ordinal, query, degraded) || isAbbreviationMatch(snapshot, ordinal, query)) {
+                refined.add(ordinal);
+            }
+        }
+        return refined.toNativeArray();
     }
 
-    private MetadataSuggestionNode findDeepestMetadataMatch(Map<String, MetadataSuggestionNode> roots,
-                                                            String[] pathSegments, boolean matchAllSegments) {
-        MetadataSuggestionNode closestMatchedRoot = roots.get(pathSegments[0]);
-        if (closestMatchedRoot != null) {
-            closestMatchedRoot =
-                    closestMatchedRoot.findDeepestMetadataNode(pathSegments, 1, matchAllSegments);
+    /**
+     * Once degraded, simples are only matched by prefix
+     */
+    private static boolean isSimpleMatch(SuggestionIndexSnapshot snapshot, int ordinal, String simpleQuery,
+                                         boolean degraded) {
+        if (!isOfferedSimple(snapshot, ordinal)) {
+            return false;
         }
-        return closestMatchedRoot;
+        String name = simpleName(snapshot, ordinal);
+        return degraded ? name.startsWith(simpleQuery) : name.contains(simpleQuery);
+    }
+
+    private static boolean isAbbreviationMatch(SuggestionIndexSnapshot snapshot, int ordinal, String simpleQuery) {
+        return isOfferedSimple(snapshot, ordinal)
+                && AbbreviationIndex.matches(simpleName(snapshot, ordinal), simpleQuery);
     }
 
+    /**
+     * @return true if the top level entry is a simple that may be suggested at all
+     */
+    private static boolean isOfferedSimple(SuggestionIndexSnapshot snapshot, int ordinal) {
+        if (!snapshot.isSimple(ordinal)) {
+            return false;
+        }
+        SpringConfigurationMetadataProperty property =
+                ArenaSuggestionNode.class.cast(snapshot.getTopLevel(ordinal)).getProperty();
+        return property != null && !property.isDeprecatedError();
+    }
+
+    private static String simpleName(SuggestionIndexSnapshot snapshot, int ordinal) {
+        return ArenaSuggestionNode.class.cast(snapshot.getTopLevel(ordinal)).getProperty().getName();
+    }
 
     @SuppressWarnings("unused")
     private String toTree() {
         StringBuilder builder = new StringBuilder();
-        moduleNameToRootSearchIndex.forEach((k, v) -> {
-            builder.append("Module: ").append(k).append("\n");
-            v.values().forEach(root -> builder
-                    .append(root.toTree().trim().replaceAll("^", "  ").replaceAll("\n", "\n  "))
-                    .append("\n"));
-        });
+        SuggestionIndexSnapshot snapshot = snapshotRef.get();
+        if (snapshot != null) {
+            for (int ordinal = 0; ordinal < snapshot.getTopLevelCount(); ordinal++) {
+                if (!snapshot.isSimple(ordinal)) {
+                    builder.append(snapshot.getTopLevel(ordinal).toTree().trim().replaceAll("^", "  ")
+                            .replaceAll("\n", "\n  ")).append("\n");
+                }
+            }
+        }
         return builder.toString();
     }
 
@@ -0,0 +1,42 @@
+package com.pine.fast.plugin.misc;
+
+import static com.intellij.codeInsight.completion.CompletionUtilCore.DUMMY_IDENTIFIER_TRIMMED;
+
+/**
+ * Compares {@link QueryTokenizer} with the regex based code it replaced, on the samples of {@link QueryTokenizerTest}.
+ * Not a test, run its main method by hand; the first rounds only warm up the JIT
+ */
+public final class QueryTokenizerBenchmark {
+
+  private static final int ROUNDS = 10;
+  private static final int ITERATIONS = 500_000;
+
+  private QueryTokenizerBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    String[] samples = QueryTokenizerTest.SAMPLES;
+    // keeps the JIT from dropping the work
+    long checksum = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        String query = samples[i % samples.length].replace(DUMMY_IDENTIFIER_TRIMMED, "");
+        String containsQuery = QueryTokenizerTest.legacyContainsQuery(query);
+        checksum += QueryTokenizerTest.legacySegments(query, true).length + (containsQuery != null ? 2 : 1);
+      }
+      long regex = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        QueryTokenizer tokenizer = QueryTokenizer.forCurrentThread().tokenize(samples[i % samples.length]);
+        checksum += QueryTokenizer.toSanitizedPathSegments(tokenizer.getQuery()).length
+            + (tokenizer.getContainsQuery() != null ? 2 : 1);
+      }
+      long tokenizer = System.nanoTime() - start;
+      System.out.printf("round %d: regex %d ns/op, tokenizer %d ns/op%n", round, regex / ITERATIONS,
+          tokenizer / ITERATIONS);
+    }
+    System.out.println("checksum " + checksum);
+  }
+}
@@ -0,0 +1,58 @@
+package com.pine.fast.plugin.misc;
+
+import static com.intellij.codeInsight.completion.CompletionUtilCore.DUMMY_IDENTIFIER_TRIMMED;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class QueryTokenizerTest {
+
+  static final String PLACEHOLDER_REGEX = "\\$\\{\\w+\\}=|\\$\\{\\w+\\} =";
+
+  static final String[] SAMPLES = {
+      "spring.redis.host" + DUMMY_IDENTIFIER_TRIMMED,
+      " spring_profiles.ac-tive" + DUMMY_IDENTIFIER_TRIMMED + " ",
+      "${element}=xpa" + DUMMY_IDENTIFIER_TRIMMED,
+      "${element} = xpath",
+      "${a}=${b}=c",
+      "${}=x",
+      "${a}=",
+      "..a.",
+      ""
+  };
+
+  @Test
+  void givenSamples_whenTokenized_thenResultsMatchTheRegexBasedImplementation() {
+    for (String sample : SAMPLES) {
+      QueryTokenizer tokenizer = QueryTokenizer.forCurrentThread().tokenize(sample);
+      String query = sample.replace(DUMMY_IDENTIFIER_TRIMMED, "");
+      assertEquals(query, tokenizer.getQuery());
+      assertEquals(query, QueryTokenizer.stripDummyIdentifier(sample));
+      assertEquals(legacyContainsQuery(query), tokenizer.getContainsQuery(), sample);
+      assertArrayEquals(legacySegments(query, true), QueryTokenizer.toSanitizedPathSegments(query), sample);
+      assertArrayEquals(legacySegments(query, false), QueryTokenizer.toRawPathSegments(query), sample);
+    }
+  }
+
+  @Test
+  void givenPlaceholderQuery_whenTokenized_thenOnlyTheTextAfterThePlaceholderIsTheContainsQuery() {
+    assertEquals("xpath", QueryTokenizer.forCurrentThread().tokenize("${element} = xpath").getContainsQuery());
+    assertNull(QueryTokenizer.forCurrentThread().tokenize("x${a}=${b}=").getContainsQuery());
+    assertNull(QueryTokenizer.forCurrentThread().tokenize("spring.redis").getContainsQuery());
+  }
+
+  static String legacyContainsQuery(String query) {
+    String[] split = query.split(PLACEHOLDER_REGEX);
+    return split.length == 2 ? split[1].trim() : null;
+  }
+
+  static String[] legacySegments(String element, boolean sanitise) {
+    String[] splits = element.trim().split("\\.", -1);
+    for (int i = 0; i < splits.length; i++) {
+      splits[i] = sanitise ? splits[i].trim().replaceAll("_", "").replace("-", "") : splits[i].trim();
+    }
+    return splits;
+  }
+}
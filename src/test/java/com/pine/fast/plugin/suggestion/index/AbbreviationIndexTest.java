@@ -0,0 +1,21 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class AbbreviationIndexTest {
+
+  @Test
+  void givenCamelCaseName_whenInitialsAreTaken_thenEveryHumpContributesItsFirstLetter() {
+    assertEquals("mtewo", AbbreviationIndex.toInitials("moveToElementWithOffset"));
+    assertEquals("qnd", AbbreviationIndex.toInitials("queryNotDisplayed"));
+  }
+
+  @Test
+  void givenNameWithPunctuationAndDigits_whenInitialsAreTaken_thenOnlyLettersAndDigitsStartHumps() {
+    assertEquals("gcwh", AbbreviationIndex.toInitials("$.getCurrentWindowHandle()"));
+    assertEquals("sw2", AbbreviationIndex.toInitials("switchWindow2"));
+    assertEquals("srh", AbbreviationIndex.toInitials("spring-redis.host"));
+  }
+}
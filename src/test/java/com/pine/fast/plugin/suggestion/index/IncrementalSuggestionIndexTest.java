@@ -0,0 +1,59 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.pine.fast.plugin.suggestion.SuggestionNodeType;
+import com.pine.fast.plugin.suggestion.metadata.ArenaSuggestionNode;
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import org.junit.jupiter.api.Test;
+
+class IncrementalSuggestionIndexTest {
+
+  private static final String BASE =
+      "{\"properties\": [{\"name\": \"spring.redis.host\"}, {\"name\": \"spring.redis.port\"}]}";
+  private static final String CUSTOM_HINT =
+      "{\"hints\": [{\"name\": \"spring.redis.host\", \"values\": [{\"value\": \"localhost\"}]}]}";
+
+  @Test
+  void givenPublishedSnapshot_whenOverlayAddsHint_thenPropertyOfTheBaseSnapshotIsUntouched() throws Exception {
+    SuggestionIndexSnapshot base = SuggestionIndexBuilder.build(source("bundled", BASE));
+    SpringConfigurationMetadataProperty baseProperty = redisHost(base);
+    assertEquals(SuggestionNodeType.UNDEFINED, baseProperty.getSuggestionNodeType(null));
+
+    IncrementalSuggestionIndex index = new IncrementalSuggestionIndex(base);
+    assertTrue(index.applySource(source("custom", CUSTOM_HINT)));
+    SuggestionIndexSnapshot overlay = index.publish();
+
+    SpringConfigurationMetadataProperty overlayProperty = redisHost(overlay);
+    assertNotSame(baseProperty, overlayProperty);
+    assertEquals(SuggestionNodeType.VALUES, overlayProperty.getSuggestionNodeType(null));
+    assertEquals(SuggestionNodeType.UNDEFINED, redisHost(base).getSuggestionNodeType(null));
+  }
+
+  @Test
+  void givenHintOfRemovedSource_whenPublished_thenThePropertyOfTheOtherSourceLosesIt() throws Exception {
+    IncrementalSuggestionIndex index =
+        new IncrementalSuggestionIndex(SuggestionIndexBuilder.build(source("bundled", BASE)));
+    assertTrue(index.applySource(source("custom", CUSTOM_HINT)));
+    SuggestionIndexSnapshot withHint = index.publish();
+
+    assertTrue(index.removeSource("custom"));
+    SuggestionIndexSnapshot withoutHint = index.publish();
+
+    assertEquals(SuggestionNodeType.UNDEFINED, redisHost(withoutHint).getSuggestionNodeType(null));
+    assertEquals(SuggestionNodeType.VALUES, redisHost(withHint).getSuggestionNodeType(null));
+  }
+
+  private static SuggestionMetadataSource source(String ref, String json) {
+    return new SuggestionMetadataSource(ref, json.getBytes(UTF_8), false);
+  }
+
+  private static SpringConfigurationMetadataProperty redisHost(SuggestionIndexSnapshot snapshot) {
+    ArenaSuggestionNode node = (ArenaSuggestionNode) snapshot.getRoot("spring")
+        .findDeepestMetadataNode(new String[] {"spring", "redis", "host"}, 1, true);
+    return node.getProperty();
+  }
+}
@@ -0,0 +1,56 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.jupiter.api.Test;
+
+class SuggestionIndexBuilderTest {
+
+  @Test
+  void givenBundledMetadata_whenBuiltFromJsonAndFromPrebuiltIndex_thenTreesHaveTheSameShape() throws IOException {
+    byte[] prebuilt = load(SuggestionIndexFormat.RESOURCE);
+    // generated by the compileSuggestionIndex task, missing when the tests run without the gradle build
+    assumeTrue(prebuilt != null, "no prebuilt index on the classpath");
+    byte[] json = load("/suggestion.json");
+
+    assertSameShape(SuggestionIndexBuilder.build(new SuggestionMetadataSource("prebuilt", prebuilt, true)),
+        SuggestionIndexBuilder.build(new SuggestionMetadataSource("json", json, false)));
+  }
+
+  @Test
+  void givenPropertiesOutOfOrder_whenBuiltFromJson_thenTheyAreAddedInNameOrder() throws IOException {
+    // the first property of a sanitised path names the group, `Foo` sorts before `foo`
+    String unsorted = "{\"properties\": [{\"name\": \"spring.foo.a\"}, {\"name\": \"spring.Foo.b\"}]}";
+    String sorted = "{\"properties\": [{\"name\": \"spring.Foo.b\"}, {\"name\": \"spring.foo.a\"}]}";
+
+    SuggestionIndexSnapshot snapshot = build(unsorted);
+    assertSameShape(build(sorted), snapshot);
+    assertEquals("spring(root + group)\n  Foo(intermediate)\n    a(property)\n    b(property)",
+        snapshot.getRoot("spring").toTree().trim());
+  }
+
+  private static SuggestionIndexSnapshot build(String json) throws IOException {
+    return SuggestionIndexBuilder.build(new SuggestionMetadataSource("test", json.getBytes(UTF_8), false));
+  }
+
+  private static void assertSameShape(SuggestionIndexSnapshot expected, SuggestionIndexSnapshot actual) {
+    assertEquals(expected.getTopLevelCount(), actual.getTopLevelCount());
+    for (int ordinal = 0; ordinal < expected.getTopLevelCount(); ordinal++) {
+      String name = expected.getTopLevelName(ordinal);
+      assertEquals(name, actual.getTopLevelName(ordinal));
+      assertEquals(expected.isSimple(ordinal), actual.isSimple(ordinal), name);
+      assertEquals(expected.getTopLevel(ordinal).toTree(), actual.getTopLevel(ordinal).toTree(), name);
+    }
+  }
+
+  private static byte[] load(String resource) throws IOException {
+    try (InputStream in = SuggestionIndexBuilderTest.class.getResourceAsStream(resource)) {
+      return in != null ? FileUtil.loadBytes(in) : null;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.pine.fast.plugin.suggestion.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.pine.fast.plugin.suggestion.metadata.MetadataSuggestionNode;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SuggestionIndexSnapshotTest {
+
+  /**
+   * Top level entries in ordinal order: ab (simple), server (root), sort (simple), spring (root), spring (simple), zzz
+   * (simple)
+   */
+  private static final String METADATA = "{"
+      + "\"properties\": [{\"name\": \"spring.redis.host\"}, {\"name\": \"server.port\"}],"
+      + "\"simples\": [{\"name\": \"spring\"}, {\"name\": \"sort\"}, {\"name\": \"zzz\"}, {\"name\": \"ab\"}]"
+      + "}";
+
+  private SuggestionIndexSnapshot snapshot;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    snapshot = SuggestionIndexBuilder.build(new SuggestionMetadataSource("test", METADATA.getBytes(UTF_8), false));
+  }
+
+  @Test
+  void givenRootsAndSimples_whenSnapshotIsBuilt_thenBothAreMergedInNameOrder() {
+    assertEquals(6, snapshot.getTopLevelCount());
+    boolean[] simples = {true, false, true, false, true, true};
+    for (int ordinal = 0; ordinal < simples.length; ordinal++) {
+      assertEquals(simples[ordinal], snapshot.isSimple(ordinal), "kind of " + ordinal);
+    }
+    assertSame(snapshot.getSimple("ab"), snapshot.getTopLevel(0));
+    assertSame(snapshot.getRoot("server"), snapshot.getTopLevel(1));
+    assertSame(snapshot.getSimple("sort"), snapshot.getTopLevel(2));
+    assertSame(snapshot.getRoot("spring"), snapshot.getTopLevel(3));
+    assertSame(snapshot.getSimple("spring"), snapshot.getTopLevel(4));
+    assertSame(snapshot.getSimple("zzz"), snapshot.getTopLevel(5));
+  }
+
+  @Test
+  void givenPrefix_whenRangeIsLookedUp_thenItStartsAtTheFirstEntryOfEitherKind() {
+    assertEquals(0, snapshot.rangeStart("a"));
+    assertEquals(1, snapshot.rangeEnd(0, "a"));
+    assertEquals(1, snapshot.rangeStart("s"));
+    assertEquals(5, snapshot.rangeEnd(1, "s"));
+    // lower bound, the root & the simple sharing the name are both in the range
+    assertEquals(3, snapshot.rangeStart("spring"));
+    assertEquals(5, snapshot.rangeEnd(3, "spring"));
+    assertEquals(2, snapshot.rangeStart("so"));
+    assertEquals(3, snapshot.rangeEnd(2, "so"));
+    assertEquals(6, snapshot.rangeStart("zzzz"));
+    assertEquals(6, snapshot.rangeEnd(6, "zzzz"));
+  }
+
+  @Test
+  void givenName_whenRootOrdinalIsLookedUp_thenOnlyRootsAreFound() {
+    assertEquals(1, snapshot.rootOrdinal("server"));
+    assertEquals(3, snapshot.rootOrdinal("spring"));
+    assertEquals(-1, snapshot.rootOrdinal("sort"));
+    assertEquals(-1, snapshot.rootOrdinal("spr"));
+    assertEquals(-1, snapshot.rootOrdinal("missing"));
+  }
+
+  @Test
+  void givenRange_whenCheckedForRoots_thenSimplesDoNotCount() {
+    assertTrue(snapshot.hasRoot(0, 2));
+    assertTrue(snapshot.hasRoot(3, 5));
+    assertFalse(snapshot.hasRoot(0, 1));
+    assertFalse(snapshot.hasRoot(4, 6));
+    assertFalse(snapshot.hasRoot(6, 6));
+  }
+
+  @Test
+  void givenNames_whenRootsStartingWithThemAreMarked_thenSimplesAreNeverMarked() {
+    BitSet excluded = new BitSet();
+    assertTrue(snapshot.markRootsStartingWith(singletonList("s"), excluded));
+    assertEquals(bits(1, 3), excluded);
+
+    excluded.clear();
+    assertTrue(snapshot.markRootsStartingWith(asList("spring", "zzz"), excluded));
+    assertEquals(bits(3), excluded);
+
+    excluded.clear();
+    assertFalse(snapshot.markRootsStartingWith(asList("so", "ab"), excluded));
+    assertTrue(excluded.isEmpty());
+  }
+
+  @Test
+  void givenNameOfBothRootAndSimple_whenQueried_thenEachIsFoundOnceThroughItsOwnKind() {
+    int start = snapshot.rangeStart("spring");
+    int end = snapshot.rangeEnd(start, "spring");
+    // the root of the range is walked, the simple is a candidate of the text index
+    int roots = 0;
+    for (int ordinal = start; ordinal < end; ordinal++) {
+      if (!snapshot.isSimple(ordinal)) {
+        roots++;
+        assertSame(snapshot.getRoot("spring"), snapshot.getTopLevel(ordinal));
+      }
+    }
+    assertEquals(1, roots);
+    assertArrayEquals(new int[] {4}, snapshot.getSimpleContainsIndex().findCandidates("spring"));
+    assertEquals(4, snapshot.getSimpleContainsIndex().size());
+
+    Set<MetadataSuggestionNode> topLevelNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    topLevelNodes.addAll(snapshot.getTopLevelNodes());
+    assertEquals(snapshot.getTopLevelCount(), topLevelNodes.size());
+    assertNotSame(snapshot.getRoot("spring"), snapshot.getSimple("spring"));
+    assertNull(snapshot.getRoot("sort"));
+    assertNull(snapshot.getSimple("server"));
+  }
+
+  private static BitSet bits(int... indexes) {
+    BitSet bits = new BitSet();
+    for (int index : indexes) {
+      bits.set(index);
+    }
+    return bits;
+  }
+}
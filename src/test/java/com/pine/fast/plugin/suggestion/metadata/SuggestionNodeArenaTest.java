@@ -0,0 +1,78 @@
+package com.pine.fast.plugin.suggestion.metadata;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.pine.fast.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import java.util.BitSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SuggestionNodeArenaTest {
+  private SuggestionNodeArena arena;
+
+  @BeforeEach
+  void setUp() {
+    MetadataNonPropertySuggestionNode root = MetadataNonPropertySuggestionNode.newInstance("spring", null, "test");
+    addProperty(root, "spring.redis.host");
+    addProperty(root, "spring.redis.port");
+    addProperty(root, "spring.rabbitmq.host");
+    addProperty(root, "spring.application.name");
+    arena = SuggestionNodeArena.freeze(singletonList(root));
+  }
+
+  @Test
+  void givenFrozenTree_whenChildrenAreLookedUp_thenTheyAreFoundByBinarySearch() {
+    int redis = arena.findChild(0, "redis");
+    assertEquals("redis", arena.name(redis));
+    assertEquals(0, arena.parent(redis));
+    assertEquals(2, arena.childCount(redis));
+    assertTrue(arena.property(arena.findChild(redis, "port")) != null);
+    assertEquals(SuggestionNodeArena.NO_NODE, arena.findChild(0, "red"));
+  }
+
+  @Test
+  void givenFrozenTree_whenPrefixIsSearched_thenOnlyMatchingSiblingsAreInRange() {
+    int start = arena.prefixRangeStart(0, "r");
+    int end = arena.prefixRangeEnd(0, start, "r");
+    assertEquals(2, end - start);
+    assertEquals("rabbitmq", arena.name(start));
+    assertEquals("redis", arena.name(start + 1));
+
+    int none = arena.prefixRangeStart(0, "x");
+    assertEquals(none, arena.prefixRangeEnd(0, none, "x"));
+  }
+
+  @Test
+  void givenSiblingNames_whenChildrenAreMarked_thenBitsAreTheirOrdinalsWithinTheParent() {
+    BitSet excluded = new BitSet();
+    assertTrue(arena.markChildren(0, asList("redis", "unknown"), excluded));
+    int redisOrdinal = arena.findChild(0, "redis") - arena.firstChild(0);
+    assertEquals(1, excluded.cardinality());
+    assertTrue(excluded.get(redisOrdinal));
+
+    excluded.clear();
+    assertFalse(arena.markChildren(0, singletonList("unknown"), excluded));
+    assertTrue(excluded.isEmpty());
+  }
+
+  @Test
+  void givenFrozenTree_whenThawed_thenCopyIsModifiableAndArenaIsUntouched() {
+    MetadataSuggestionNode copy = arena.node(0).copy(null);
+    assertFalse(copy instanceof ArenaSuggestionNode);
+    copy.addRefCascadeTillRoot("custom");
+    assertTrue(copy.getBelongsTo().contains("custom"));
+    assertFalse(arena.belongsTo(0).contains("custom"));
+    assertEquals("spring.redis.host",
+        copy.findDeepestMetadataNode(new String[] {"spring", "redis", "host"}, 1, true).getPathFromRoot(null));
+  }
+
+  private static void addProperty(MetadataNonPropertySuggestionNode root, String name) {
+    SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+    property.setName(name);
+    root.addChildren(property, name.split("\\."), 1, "test");
+  }
+}
@@ -0,0 +1,60 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.pine.fast.plugin.suggestion.service.SearchDegradation.Change;
+import org.junit.jupiter.api.Test;
+
+class SearchDegradationTest {
+
+  private static final long BUDGET = 100;
+
+  @Test
+  void givenSingleSlowRequests_whenRecorded_thenOnlyConsecutiveOverrunsDegrade() {
+    SearchDegradation degradation = new SearchDegradation();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Change.NONE, degradation.record(1, 500, BUDGET));
+      assertEquals(Change.NONE, degradation.record(1, 10, BUDGET));
+    }
+    assertFalse(degradation.isDegraded(1));
+
+    for (int i = 1; i < SearchDegradation.OVERRUNS_TILL_DEGRADED; i++) {
+      assertEquals(Change.NONE, degradation.record(1, BUDGET, BUDGET));
+    }
+    assertEquals(Change.DEGRADED, degradation.record(1, BUDGET, BUDGET));
+    assertTrue(degradation.isDegraded(1));
+  }
+
+  @Test
+  void givenDegradedSession_whenRequestsAreFastAgain_thenItRecovers() {
+    SearchDegradation degradation = degraded();
+    for (int i = 1; i < SearchDegradation.FAST_REQUESTS_TILL_RECOVERED; i++) {
+      assertEquals(Change.NONE, degradation.record(1, 10, BUDGET));
+    }
+    // over half of the budget starts the count over
+    assertEquals(Change.NONE, degradation.record(1, 60, BUDGET));
+    for (int i = 1; i < SearchDegradation.FAST_REQUESTS_TILL_RECOVERED; i++) {
+      assertEquals(Change.NONE, degradation.record(1, 10, BUDGET));
+    }
+    assertEquals(Change.RECOVERED, degradation.record(1, 10, BUDGET));
+    assertFalse(degradation.isDegraded(1));
+  }
+
+  @Test
+  void givenDegradedSession_whenAnotherSnapshotIsSearched_thenItStartsOver() {
+    SearchDegradation degradation = degraded();
+    assertFalse(degradation.isDegraded(2));
+    assertEquals(Change.NONE, degradation.record(2, BUDGET, BUDGET));
+  }
+
+  private static SearchDegradation degraded() {
+    SearchDegradation degradation = new SearchDegradation();
+    for (int i = 0; i < SearchDegradation.OVERRUNS_TILL_DEGRADED; i++) {
+      degradation.record(1, BUDGET, BUDGET);
+    }
+    assertTrue(degradation.isDegraded(1));
+    return degradation;
+  }
+}
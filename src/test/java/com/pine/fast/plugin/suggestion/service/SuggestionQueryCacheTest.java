@@ -0,0 +1,48 @@
+package com.pine.fast.plugin.suggestion.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class SuggestionQueryCacheTest {
+
+  private static final String[] NAMES = {"click", "clickAndHold", "close", "doubleClick"};
+
+  private static final SuggestionQueryCache.Refiner<int[]> CONTAINS = (cached, cachedQuery, query) ->
+      Arrays.stream(cached).filter(ordinal -> NAMES[ordinal].contains(query)).toArray();
+
+  @Test
+  void givenValueOfShorterQuery_whenQueryGrows_thenLongestCachedPrefixIsRefined() {
+    SuggestionQueryCache<int[]> cache = new SuggestionQueryCache<>();
+    cache.put(1, "scope", "cl", new int[] {0, 1, 2});
+
+    assertArrayEquals(new int[] {0, 1}, cache.find(1, "scope", "clic", CONTAINS));
+    // refined from the value cached for clic, which no longer holds close
+    assertArrayEquals(new int[] {0, 1}, cache.find(1, "scope", "click", (cached, cachedQuery, query) -> {
+      assertEquals("clic", cachedQuery);
+      return CONTAINS.refine(cached, cachedQuery, query);
+    }));
+  }
+
+  @Test
+  void givenRefinerThatCanNotRefine_whenQueryGrows_thenQueryHasToBeSearched() {
+    SuggestionQueryCache<int[]> cache = new SuggestionQueryCache<>();
+    cache.put(1, "scope", "c", new int[] {0, 1, 2});
+
+    assertArrayEquals(new int[] {0, 1, 2}, cache.find(1, "scope", "c", (cached, cachedQuery, query) -> null));
+    assertNull(cache.find(1, "scope", "cl", (cached, cachedQuery, query) -> null));
+    assertNull(cache.find(1, "scope", "cl", null));
+  }
+
+  @Test
+  void givenValueOfAnotherSnapshotOrScope_whenLookedUp_thenNothingIsFound() {
+    SuggestionQueryCache<int[]> cache = new SuggestionQueryCache<>();
+    cache.put(1, "scope", "cl", new int[] {0, 1, 2});
+
+    assertNull(cache.find(2, "scope", "cl", CONTAINS));
+    assertNull(cache.find(1, "other scope", "cli", CONTAINS));
+  }
+}